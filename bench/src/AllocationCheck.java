@@ -0,0 +1,100 @@
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+
+// Проверка, что установившийся тик не выделяет памяти. Мир прогревается, затем
+// world.reserveCapacity заводит всё, что мир иначе дозаводит по ходу: чанки, маски газа,
+// индексы клеток и столбцы популяций с запасом в RESERVE раз. После этого каждый тик
+// замеряется по ThreadMXBean отдельно и должен выделить ровно 0 байт; иначе сценарий
+// проваливается, и процесс завершается с кодом 1.
+//
+// Не замеряются только тики, где хранилище выросло за прежний пик: появились новые грибы
+// (каждый гриб — новый объект) или популяция переросла запас и столбцы расширились.
+// Это рост, а не утечка; такие тики выводятся отдельно. Все прогоны идут дважды,
+// а оценивается второй круг: в первом JVM ещё загружает и компилирует классы.
+//
+// Считается последовательный путь (setPool(null)): задачи ForkJoinPool в параллельной
+// фазе выделяются пулом. Запись JFR должна быть выключена — иначе тик создаёт TickEvent.
+//
+// Запуск: java AllocationCheck [--warmup=5000] [--ticks=5000]
+public class AllocationCheck {
+    private static final long SEED = 42;
+    // Запас столбцов популяций от численности после прогрева
+    private static final int RESERVE = 2;
+
+    private static final int[][] SIZES = {
+            {80, 60, 20},
+            {256, 256, 500},
+    };
+
+    public static void main(String[] args) {
+        int warmup = 5000;
+        int ticks = 5000;
+        for (String arg : args) {
+            if (arg.startsWith("--warmup=")) {
+                warmup = Integer.parseInt(arg.substring("--warmup=".length()));
+            } else if (arg.startsWith("--ticks=")) {
+                ticks = Integer.parseInt(arg.substring("--ticks=".length()));
+            } else {
+                throw new IllegalArgumentException("Неизвестный аргумент: " + arg);
+            }
+        }
+
+        check(warmup, ticks, false);
+        int failures = check(warmup, ticks, true);
+        if (failures > 0) {
+            System.out.println("Выделяют память в установившемся тике: " + failures);
+            System.exit(1);
+        }
+    }
+
+    // Число сценариев, где хоть один замеренный тик выделил память
+    private static int check(int warmup, int ticks, boolean report) {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        int failures = 0;
+
+        for (int[] size : SIZES) {
+            for (Season season : Season.values()) {
+                int width = size[0], height = size[1];
+                World world = new World(width, height, size[2], Math.max(5, width * height / 320),
+                        3, 8, season, SEED);
+                world.setPool(null);
+                for (int i = 0; i < warmup; i++) world.tick();
+                world.reserveCapacity(RESERVE);
+
+                int measured = 0, growthTicks = 0, allocatingTicks = 0;
+                long allocatedBytes = 0;
+                for (int i = 0; i < ticks; i++) {
+                    int moleCapacity = world.getMoles().capacity();
+                    int wormCapacity = world.getWorms().capacity();
+                    long before = threads.getThreadAllocatedBytes(thread);
+                    world.tick();
+                    long bytes = threads.getThreadAllocatedBytes(thread) - before;
+
+                    if (world.getTickProfile().getMushroomSpawns() > 0
+                            || world.getMoles().capacity() != moleCapacity
+                            || world.getWorms().capacity() != wormCapacity) {
+                        growthTicks++;
+                        continue;
+                    }
+                    measured++;
+                    if (bytes != 0) {
+                        allocatingTicks++;
+                        allocatedBytes += bytes;
+                    }
+                }
+
+                boolean ok = allocatingTicks == 0;
+                if (!ok) failures++;
+                if (!report) continue;
+                String name = width + "x" + height + "/" + size[2] + " " + season;
+                System.out.println(String.format(Locale.ROOT,
+                        "%-22s %s  замерено тиков: %d, выделили: %d тиков, %d B  "
+                                + "не замерено (рост хранилищ): %d",
+                        name, ok ? "ok  " : "FAIL", measured, allocatingTicks, allocatedBytes, growthTicks));
+            }
+        }
+        return failures;
+    }
+}
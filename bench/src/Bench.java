@@ -0,0 +1,137 @@
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+// Замерщик в духе JMH: прогрев, несколько замеров фиксированной длины, скорость
+// в операциях за секунду и выделенная за операцию память (как у профайлера gc).
+// Память считается по всем потокам JVM, так что параллельная фаза тика тоже попадает
+final class Bench {
+
+    // Одна операция замера; результат уходит в «чёрную дыру», чтобы JIT её не выбросил
+    interface Op {
+        long run();
+    }
+
+    // Операция, которая меняет своё состояние (тики мира): перед каждым вызовом run
+    // setUp возвращает его к исходному, и это время и память в замер не входят
+    interface Fixture extends Op {
+        void setUp();
+    }
+
+    static final class Result {
+        final String name;
+        final double nanosPerOp;
+        final double nanosError;
+        final double bytesPerOp;
+
+        Result(String name, double nanosPerOp, double nanosError, double bytesPerOp) {
+            this.name = name;
+            this.nanosPerOp = nanosPerOp;
+            this.nanosError = nanosError;
+            this.bytesPerOp = bytesPerOp;
+        }
+
+        double opsPerSecond() {
+            return 1e9 / nanosPerOp;
+        }
+    }
+
+    private final int warmupIterations;
+    private final int measureIterations;
+    private final long iterationNanos;
+    private final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private volatile long blackhole;
+
+    Bench(int warmupIterations, int measureIterations, long iterationMillis) {
+        this.warmupIterations = warmupIterations;
+        this.measureIterations = measureIterations;
+        this.iterationNanos = iterationMillis * 1_000_000;
+        threads.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    Result run(String name, Op op) {
+        for (int i = 0; i < warmupIterations; i++) {
+            iteration(op);
+        }
+
+        List<Double> nanos = new ArrayList<>();
+        long totalOps = 0;
+        long totalBytes = 0;
+        for (int i = 0; i < measureIterations; i++) {
+            long bytesBefore = allocatedBytes();
+            long[] measured = iteration(op);
+            totalBytes += op instanceof Fixture ? measured[2] : allocatedBytes() - bytesBefore;
+            totalOps += measured[0];
+            nanos.add((double) measured[1] / measured[0]);
+        }
+
+        double mean = 0;
+        for (double n : nanos) mean += n;
+        mean /= nanos.size();
+        double variance = 0;
+        for (double n : nanos) variance += (n - mean) * (n - mean);
+        double error = nanos.size() > 1 ? Math.sqrt(variance / (nanos.size() - 1)) : 0;
+
+        return new Result(name, mean, error, (double) totalBytes / totalOps);
+    }
+
+    // Операции пачками, время смотрим только между пачками: сам nanoTime дороже
+    // самых быстрых поисков по сетке. Пачка растёт, пока не займёт хотя бы миллисекунду.
+    // Третий элемент — выделенная память; для пачек её считает вызывающий, он 0
+    private long[] iteration(Op op) {
+        if (op instanceof Fixture) return iteration((Fixture) op);
+        long ops = 0;
+        int batch = 1;
+        long sink = 0;
+        long start = System.nanoTime();
+        long elapsed;
+        do {
+            long batchStart = System.nanoTime();
+            for (int k = 0; k < batch; k++) {
+                sink += op.run();
+            }
+            ops += batch;
+            long now = System.nanoTime();
+            if (now - batchStart < 1_000_000 && batch < 1 << 20) batch *= 2;
+            elapsed = now - start;
+        } while (elapsed < iterationNanos);
+        blackhole += sink;
+        return new long[]{ops, elapsed, 0};
+    }
+
+    // Подготовка состояния дороже самой операции, поэтому время и память
+    // считаются вокруг каждого run отдельно, а длина замера — по сумме этих отрезков
+    private long[] iteration(Fixture op) {
+        long ops = 0;
+        long sink = 0;
+        long elapsed = 0;
+        long bytes = 0;
+        do {
+            op.setUp();
+            long bytesBefore = allocatedBytes();
+            long start = System.nanoTime();
+            sink += op.run();
+            elapsed += System.nanoTime() - start;
+            bytes += allocatedBytes() - bytesBefore;
+            ops++;
+        } while (elapsed < iterationNanos);
+        blackhole += sink;
+        return new long[]{ops, elapsed, bytes};
+    }
+
+    private long allocatedBytes() {
+        long total = 0;
+        for (long bytes : threads.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+            if (bytes > 0) total += bytes;
+        }
+        return total;
+    }
+
+    static String format(Result r) {
+        return String.format(Locale.ROOT, "%-36s %14.1f ops/s %12.1f ± %8.1f ns/op %12.1f B/op",
+                r.name, r.opsPerSecond(), r.nanosPerOp, r.nanosError, r.bytesPerOp);
+    }
+}
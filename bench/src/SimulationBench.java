@@ -0,0 +1,221 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+// Замеры горячих мест симуляции: тик целиком на разных размерах поля и численности,
+// генерация мира и отдельные запросы, из которых состоит тик.
+//
+// Запуск: java SimulationBench [--filter=подстрока] [--quick]
+//         [--save=baseline.tsv] [--baseline=baseline.tsv]
+// --save записывает результаты, --baseline сравнивает с записанными ранее
+public class SimulationBench {
+    private static final long SEED = 42;
+    // Запросов на случайные клетки за одну операцию: поиск по сетке слишком короток сам по себе
+    private static final int LOOKUPS = 1024;
+    // Тиков за одну операцию world.tick: на таком отрезке численность почти не уходит от заявленной
+    private static final int TICKS = 100;
+
+    private static final int[][] SIZES = {
+            {80, 60, 20},       // поле из Main
+            {256, 256, 500},
+            {1024, 1024, 5000},
+    };
+
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = parseOptions(args);
+        boolean quick = options.containsKey("quick");
+        Bench bench = quick ? new Bench(2, 3, 200) : new Bench(5, 5, 1000);
+        String filter = options.getOrDefault("filter", "");
+
+        List<Bench.Result> results = new ArrayList<>();
+        for (Map.Entry<String, Bench.Op> entry : cases().entrySet()) {
+            if (!entry.getKey().contains(filter)) continue;
+            Bench.Result result = bench.run(entry.getKey(), entry.getValue());
+            results.add(result);
+            System.out.println(Bench.format(result));
+        }
+
+        if (options.containsKey("baseline")) {
+            compare(results, load(Paths.get(options.get("baseline"))));
+        }
+        if (options.containsKey("save")) {
+            save(results, Paths.get(options.get("save")));
+        }
+    }
+
+    // Порядок важен для чтения отчёта, поэтому LinkedHashMap
+    private static Map<String, Bench.Op> cases() {
+        Map<String, Bench.Op> cases = new LinkedHashMap<>();
+
+        for (int[] size : SIZES) {
+            int width = size[0], height = size[1], moles = size[2];
+            String suffix = width + "x" + height + "/" + moles;
+
+            cases.put("world.new " + suffix, () -> newWorld(width, height, moles).getMoles().size());
+
+            cases.put("world.tick x" + TICKS + " " + suffix, new TickFixture(width, height, moles));
+        }
+
+        World world = newWorld(256, 256, 500);
+        for (int i = 0; i < 200; i++) world.tick();
+        int[] xs = new int[LOOKUPS];
+        int[] ys = new int[LOOKUPS];
+        SplittableRandom random = new SplittableRandom(SEED);
+        for (int i = 0; i < LOOKUPS; i++) {
+            xs[i] = random.nextInt(world.width);
+            ys[i] = random.nextInt(world.height);
+        }
+
+        cases.put("lookup.isNearWater x" + LOOKUPS, () -> {
+            long sum = 0;
+            for (int i = 0; i < LOOKUPS; i++) {
+                if (world.isNearWater(xs[i], ys[i])) sum++;
+            }
+            return sum;
+        });
+        cases.put("lookup.getWaterInfluence x" + LOOKUPS, () -> {
+            double sum = 0;
+            for (int i = 0; i < LOOKUPS; i++) {
+                sum += world.getWaterInfluence(xs[i], ys[i]);
+            }
+            return (long) sum;
+        });
+        // То, что читает Moles.adjustDirectionToWater
+        cases.put("lookup.nearestWater x" + LOOKUPS, () -> {
+            long sum = 0;
+            for (int i = 0; i < LOOKUPS; i++) {
+                int dx = world.getNearestWaterDx(xs[i], ys[i]);
+                if (dx != World.NO_NEAREST_WATER) sum += dx + world.getNearestWaterDy(xs[i], ys[i]);
+            }
+            return sum;
+        });
+        // То, что читает Animals.checkForFood
+        cases.put("lookup.food x" + LOOKUPS, () -> {
+            long sum = 0;
+            for (int i = 0; i < LOOKUPS; i++) {
+                sum += world.getWormAt(xs[i], ys[i]);
+                if (world.hasRootAt(xs[i], ys[i])) sum++;
+                if (world.getMushroomAt(xs[i], ys[i]) != null) sum++;
+            }
+            return sum;
+        });
+
+        // Туннели осыпаются только если их роют: каждая операция прокладывает
+        // 64 клетки и сдвигает часы туннелей на тик, как это делает тик мира
+        World tunnels = newWorld(256, 256, 0);
+        SplittableRandom digRandom = new SplittableRandom(SEED);
+        cases.put("tunnels.dig64+update", () -> {
+            for (int k = 0; k < 64; k++) {
+                tunnels.markTunnelCell(digRandom.nextInt(tunnels.width), digRandom.nextInt(tunnels.height));
+            }
+            tunnels.updateTunnels();
+            return 0;
+        });
+
+        return cases;
+    }
+
+    // Тик меняет мир, и если гонять один мир весь замер, популяция растёт вместе
+    // с числом сделанных тиков: быстрый код успевает больше и мерит уже другое поле.
+    // Поэтому каждая операция начинается с одного и того же свежего мира из SEED —
+    // он восстанавливается из снимка, это быстрее генерации — и делает TICKS тиков
+    private static final class TickFixture implements Bench.Fixture {
+        private final int width;
+        private final int height;
+        private final int moles;
+        private Path snapshot;
+        private World world;
+
+        TickFixture(int width, int height, int moles) {
+            this.width = width;
+            this.height = height;
+            this.moles = moles;
+        }
+
+        @Override
+        public void setUp() {
+            try {
+                // Снимок пишется при первом вызове, чтобы --filter не строил лишнего
+                if (snapshot == null) {
+                    snapshot = Files.createTempFile("bench-world", ".snap");
+                    snapshot.toFile().deleteOnExit();
+                    WorldSnapshot.save(newWorld(width, height, moles), snapshot);
+                }
+                world = WorldSnapshot.load(snapshot);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public long run() {
+            for (int i = 0; i < TICKS; i++) world.tick();
+            return world.getMoles().size();
+        }
+    }
+
+    // Водоёмов столько же на площадь, сколько на поле из Main
+    private static World newWorld(int width, int height, int moles) {
+        int water = Math.max(5, width * height / 320);
+        return new World(width, height, moles, water, 3, 8, Season.SPRING, SEED);
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                throw new IllegalArgumentException("Неизвестный аргумент: " + arg);
+            }
+            int eq = arg.indexOf('=');
+            if (eq < 0) {
+                options.put(arg.substring(2), "");
+            } else {
+                options.put(arg.substring(2, eq), arg.substring(eq + 1));
+            }
+        }
+        return options;
+    }
+
+    // Файл результатов: имя, нс на операцию, байт на операцию — через табуляцию
+    private static void save(List<Bench.Result> results, Path path) throws IOException {
+        List<String> lines = new ArrayList<>();
+        for (Bench.Result r : results) {
+            lines.add(String.format(Locale.ROOT, "%s\t%.3f\t%.3f", r.name, r.nanosPerOp, r.bytesPerOp));
+        }
+        Files.write(path, lines, StandardCharsets.UTF_8);
+    }
+
+    private static Map<String, double[]> load(Path path) throws IOException {
+        Map<String, double[]> baseline = new HashMap<>();
+        for (String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+            String[] parts = line.split("\t");
+            if (parts.length != 3) continue;
+            baseline.put(parts[0], new double[]{Double.parseDouble(parts[1]), Double.parseDouble(parts[2])});
+        }
+        return baseline;
+    }
+
+    private static void compare(List<Bench.Result> results, Map<String, double[]> baseline) {
+        System.out.println();
+        System.out.println("Сравнение с базой (время: меньше — лучше):");
+        for (Bench.Result r : results) {
+            double[] base = baseline.get(r.name);
+            if (base == null) {
+                System.out.printf(Locale.ROOT, "%-36s нет в базе%n", r.name);
+                continue;
+            }
+            System.out.printf(Locale.ROOT, "%-36s время %+7.1f%%   память %10.1f -> %10.1f B/op%n",
+                    r.name, (r.nanosPerOp / base[0] - 1) * 100, base[1], r.bytesPerOp);
+        }
+    }
+}
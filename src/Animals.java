@@ -0,0 +1,528 @@
+import java.io.IOException;
+import java.util.Arrays;
+
+// Популяция животных одного вида, хранимая столбцами примитивов (struct of arrays).
+// slot — номер строки в столбцах, меняется при удалении (последняя особь переезжает
+// на место удалённой); id — постоянный номер особи на всё время её жизни.
+//
+// Тик особи идёт в две фазы. plan читает только неизменяемое в фазе состояние мира
+// и пишет лишь в свою строку, поэтому планы считаются параллельно. commit применяет
+// намерение (переход, еда, смерть, потомство) к общему состоянию в порядке, который
+// задаёт StripPartition.commitAll: полосы поля, внутри полосы — по порядку слотов
+public abstract class Animals {
+
+
+    protected static final int WORM_FOOD_VALUE = 100;
+    protected static final int ROOT_FOOD_VALUE = 50;
+    protected static final int MUSHROOM_FOOD_VALUE = 30;
+
+    // Четыре соседа по порядку перебора; общая таблица, чтобы тик не создавал своих
+    protected static final int[][] DIRECTIONS = {{0, 1}, {1, 0}, {0, -1}, {-1, 0}};
+
+    static final int INITIAL_CAPACITY = 64;
+    private static final int NONE = -1;
+    // Отметка свободного id, пока Animals.read проверяет список свободных
+    private static final int FREE = -2;
+
+    // Флаги намерения, собранного в plan
+    protected static final byte INTENT_STARVE = 1;     // умирает, не сходя с места
+    protected static final byte INTENT_MOVE = 2;       // переходит в (planX, planY)
+    protected static final byte INTENT_GAS = 4;        // после перехода гибнет в газе
+    protected static final byte INTENT_REPRODUCE = 8;  // пытается оставить потомка
+
+    protected final Grid grid;
+    protected final int width;
+    protected final int height;
+
+    protected int count = 0;
+    protected int capacity = INITIAL_CAPACITY;
+
+    protected int[] ids = new int[INITIAL_CAPACITY];
+    protected int[] x = new int[INITIAL_CAPACITY];
+    protected int[] y = new int[INITIAL_CAPACITY];
+    protected short[] hunger = new short[INITIAL_CAPACITY];
+    protected short[] reproductionCounter = new short[INITIAL_CAPACITY];
+    protected boolean[] alive = new boolean[INITIAL_CAPACITY];
+    // Поток случайных чисел каждой особи (см. Rng)
+    protected long[] rng = new long[INITIAL_CAPACITY];
+
+    // Намерение на текущий тик
+    protected byte[] intent = new byte[INITIAL_CAPACITY];
+    protected int[] planX = new int[INITIAL_CAPACITY];
+    protected int[] planY = new int[INITIAL_CAPACITY];
+
+    // Индекс занятости: двусвязные списки слотов по клеткам. Головы списков хранятся
+    // по чанкам Grid; массив чанка заводится, когда в него впервые заходит особь
+    private final int[][] cellHead;
+    private int[] prevInCell = new int[INITIAL_CAPACITY];
+    private int[] nextInCell = new int[INITIAL_CAPACITY];
+
+    // id -> slot; освободившиеся id выдаются заново
+    private int[] slotOfId = new int[INITIAL_CAPACITY];
+    private int nextId = 0;
+    private int[] freeIds = new int[INITIAL_CAPACITY];
+    private int freeIdCount = 0;
+
+    // Слоты, разложенные по полосам поля (см. StripPartition); растёт вместе со слотами
+    int[] stripOrder = new int[INITIAL_CAPACITY];
+
+    protected Animals(Grid grid) {
+        this.grid = grid;
+        this.width = grid.width;
+        this.height = grid.height;
+        this.cellHead = new int[grid.chunkCount()][];
+    }
+
+    public int size() {
+        return count;
+    }
+
+    // Длина столбцов: сколько особей поместится без расширения
+    int capacity() {
+        return capacity;
+    }
+
+    public int getId(int slot) {
+        return ids[slot];
+    }
+
+    // Слот особи с данным id или -1, если она уже удалена
+    public int slotOf(int id) {
+        return id >= 0 && id < nextId ? slotOfId[id] : NONE;
+    }
+
+    public boolean isAlive(int slot) {
+        return alive[slot];
+    }
+
+    public int getX(int slot) {
+        return x[slot];
+    }
+
+    public int getY(int slot) {
+        return y[slot];
+    }
+
+    public int getHunger(int slot) {
+        return hunger[slot];
+    }
+
+    public int getReproductionCounter(int slot) {
+        return reproductionCounter[slot];
+    }
+
+    // Слот первой живой особи в клетке или -1
+    public int firstAt(int cx, int cy) {
+        if (cx < 0 || cx >= width || cy < 0 || cy >= height) return NONE;
+        int cell = grid.index(cx, cy);
+        int[] heads = cellHead[Grid.chunkOf(cell)];
+        if (heads == null) return NONE;
+        for (int s = heads[Grid.localOf(cell)]; s != NONE; s = nextInCell[s]) {
+            if (alive[s]) return s;
+        }
+        return NONE;
+    }
+
+    // Следующая живая особь в той же клетке после slot или -1; вместе с firstAt
+    // обходит всех в клетке
+    public int nextAt(int slot) {
+        for (int s = nextInCell[slot]; s != NONE; s = nextInCell[s]) {
+            if (alive[s]) return s;
+        }
+        return NONE;
+    }
+
+    public boolean hasAt(int cx, int cy) {
+        return firstAt(cx, cy) != NONE;
+    }
+
+    // Новая особь в конце столбцов; возвращает её слот
+    protected int add(int px, int py, long seed) {
+        if (count == capacity) {
+            grow(capacity * 2);
+        }
+        int slot = count++;
+        int id = freeIdCount > 0 ? freeIds[--freeIdCount] : nextId++;
+        if (id >= slotOfId.length) {
+            slotOfId = Arrays.copyOf(slotOfId, slotOfId.length * 2);
+        }
+        slotOfId[id] = slot;
+
+        ids[slot] = id;
+        x[slot] = px;
+        y[slot] = py;
+        hunger[slot] = 0;
+        reproductionCounter[slot] = 0;
+        alive[slot] = true;
+        rng[slot] = seed;
+        intent[slot] = 0;
+        link(slot);
+        return slot;
+    }
+
+    // Особь умирает сразу (пропадает из индекса клеток), а строка столбцов
+    // освобождается в removeDead — так слоты не сдвигаются посреди обхода
+    protected void kill(int slot) {
+        if (!alive[slot]) return;
+        alive[slot] = false;
+        unlink(slot);
+    }
+
+    // Удаляет мёртвых перестановкой последней строки на их место
+    public void removeDead() {
+        int slot = 0;
+        while (slot < count) {
+            if (alive[slot]) {
+                slot++;
+                continue;
+            }
+            int id = ids[slot];
+            slotOfId[id] = NONE;
+            if (freeIdCount == freeIds.length) {
+                freeIds = Arrays.copyOf(freeIds, freeIds.length * 2);
+            }
+            freeIds[freeIdCount++] = id;
+
+            int last = --count;
+            if (slot != last) {
+                moveSlot(last, slot);
+            }
+        }
+    }
+
+    // Переносит строку from в to (from освобождается)
+    protected void moveSlot(int from, int to) {
+        ids[to] = ids[from];
+        x[to] = x[from];
+        y[to] = y[from];
+        hunger[to] = hunger[from];
+        reproductionCounter[to] = reproductionCounter[from];
+        alive[to] = alive[from];
+        rng[to] = rng[from];
+        intent[to] = intent[from];
+        planX[to] = planX[from];
+        planY[to] = planY[from];
+        slotOfId[ids[to]] = to;
+
+        // Соседи по клетке теперь ссылаются на новый слот
+        prevInCell[to] = prevInCell[from];
+        nextInCell[to] = nextInCell[from];
+        if (alive[to]) {
+            if (prevInCell[to] != NONE) {
+                nextInCell[prevInCell[to]] = to;
+            } else {
+                setHead(x[to], y[to], to);
+            }
+            if (nextInCell[to] != NONE) {
+                prevInCell[nextInCell[to]] = to;
+            }
+        }
+    }
+
+    protected void grow(int newCapacity) {
+        capacity = newCapacity;
+        ids = Arrays.copyOf(ids, newCapacity);
+        x = Arrays.copyOf(x, newCapacity);
+        y = Arrays.copyOf(y, newCapacity);
+        hunger = Arrays.copyOf(hunger, newCapacity);
+        reproductionCounter = Arrays.copyOf(reproductionCounter, newCapacity);
+        alive = Arrays.copyOf(alive, newCapacity);
+        rng = Arrays.copyOf(rng, newCapacity);
+        intent = Arrays.copyOf(intent, newCapacity);
+        planX = Arrays.copyOf(planX, newCapacity);
+        planY = Arrays.copyOf(planY, newCapacity);
+        prevInCell = Arrays.copyOf(prevInCell, newCapacity);
+        nextInCell = Arrays.copyOf(nextInCell, newCapacity);
+        stripOrder = new int[newCapacity];
+        // Столбцы id растут вместе со слотами, а не на другом тике, когда до них дойдёт очередь
+        if (slotOfId.length < newCapacity) slotOfId = Arrays.copyOf(slotOfId, newCapacity);
+        if (freeIds.length < newCapacity) freeIds = Arrays.copyOf(freeIds, newCapacity);
+    }
+
+    // Столбцы под population особей и головы списков во всех чанках — см. World.reserveCapacity.
+    // Выданных id всегда count + freeIdCount: nextId дорастает до пика численности, и дальше
+    // столбцы id расширяются только вместе со слотами в grow
+    void reserve(int population) {
+        if (capacity < population) grow(population);
+        int idCount = Math.max(capacity, nextId);
+        if (slotOfId.length < idCount) slotOfId = Arrays.copyOf(slotOfId, idCount);
+        if (freeIds.length < idCount) freeIds = Arrays.copyOf(freeIds, idCount);
+        for (int chunk = 0; chunk < cellHead.length; chunk++) headsOf(chunk);
+    }
+
+    // Коммит слота не выходит из строк [top, bottom) и никого не рождает. Такие слоты разных
+    // полос не делят ни клеток, ни особей и коммитятся параллельно (StripPartition.commitAll).
+    // Коммит трогает клетку особи, соседнюю, куда она переходит, и строку над ними:
+    // съеденный корень делает растущим кончиком корень сверху (World.removeRoot)
+    boolean commitsWithin(int slot, int top, int bottom) {
+        if (!alive[slot]) return true;
+        if ((intent[slot] & INTENT_REPRODUCE) != 0) return false;
+        int toY = y[slot];
+        if (movesOnCommit(slot)) {
+            if (Math.abs(planX[slot] - x[slot]) > 1 || Math.abs(planY[slot] - y[slot]) > 1) return false;
+            toY = planY[slot];
+        }
+        return Math.min(y[slot], toY) - 1 >= top && Math.max(y[slot], toY) < bottom;
+    }
+
+    // Переходит ли особь при коммите в клетку (planX, planY)
+    protected boolean movesOnCommit(int slot) {
+        return alive[slot] && (intent[slot] & INTENT_MOVE) != 0
+                && (intent[slot] & (INTENT_STARVE | INTENT_GAS)) == 0;
+    }
+
+    // Заводит заранее массивы чанков, которые может завести коммит слота: перед
+    // параллельным коммитом, чтобы полосы не заводили общий массив одновременно
+    void prepareCommit(int slot) {
+        if (movesOnCommit(slot)) headsOf(Grid.chunkOf(grid.index(planX[slot], planY[slot])));
+    }
+
+    // Снимок популяции: раздатчик id и столбцы слотов. Списки по клеткам пишутся как есть —
+    // от их порядка зависит, какую из особей в клетке найдёт firstAt. Намерения не пишутся:
+    // снимок снимается между тиками, а plan считает их заново
+    void write(SnapshotWriter out) throws IOException {
+        out.putInt(count);
+        out.putInt(nextId);
+        out.putInt(freeIdCount);
+        out.putInts(freeIds, freeIdCount);
+        out.putInts(ids, count);
+        out.putInts(x, count);
+        out.putInts(y, count);
+        out.putShorts(hunger, count);
+        out.putShorts(reproductionCounter, count);
+        out.putBooleans(alive, count);
+        out.putLongs(rng, count);
+        out.putInts(prevInCell, count);
+        out.putInts(nextInCell, count);
+    }
+
+    // Читает в пустую популяцию; индексы id и клеток восстанавливаются по столбцам
+    void read(SnapshotReader in) throws IOException {
+        // На особь в снимке приходится 33 байта столбцов, на свободный id — 4
+        int n = in.getCount(33);
+        nextId = in.getInt();
+        freeIdCount = in.getCount(4);
+        // Каждый выданный id либо у особи в слоте, либо в списке свободных
+        if ((long) n + freeIdCount != nextId) {
+            throw new IOException("Неверный размер популяции в снимке: " + n);
+        }
+        int newCapacity = capacity;
+        while (newCapacity < n) newCapacity *= 2;
+        if (newCapacity != capacity) grow(newCapacity);
+        count = n;
+
+        freeIds = new int[Math.max(INITIAL_CAPACITY, freeIdCount)];
+        in.getInts(freeIds, freeIdCount);
+        in.getInts(ids, count);
+        in.getInts(x, count);
+        in.getInts(y, count);
+        in.getShorts(hunger, count);
+        in.getShorts(reproductionCounter, count);
+        in.getBooleans(alive, count);
+        in.getLongs(rng, count);
+        in.getInts(prevInCell, count);
+        in.getInts(nextInCell, count);
+
+        slotOfId = new int[Math.max(INITIAL_CAPACITY, nextId)];
+        Arrays.fill(slotOfId, NONE);
+        for (int slot = 0; slot < count; slot++) {
+            int id = ids[slot];
+            if (id < 0 || id >= nextId || slotOfId[id] != NONE) {
+                throw new IOException("Неверный id особи в снимке: " + id);
+            }
+            if (!grid.contains(x[slot], y[slot])) {
+                throw new IOException("Особь вне поля в снимке: " + x[slot] + "," + y[slot]);
+            }
+            if (prevInCell[slot] < NONE || prevInCell[slot] >= count
+                    || nextInCell[slot] < NONE || nextInCell[slot] >= count) {
+                throw new IOException("Неверная ссылка списка клетки в снимке у слота " + slot);
+            }
+            slotOfId[id] = slot;
+        }
+        // Свободные id проверяются через slotOfId: временная отметка FREE снимается следом
+        for (int k = 0; k < freeIdCount; k++) {
+            int id = freeIds[k];
+            if (id < 0 || id >= nextId || slotOfId[id] != NONE) {
+                throw new IOException("Неверный свободный id в снимке: " + id);
+            }
+            slotOfId[id] = FREE;
+        }
+        for (int k = 0; k < freeIdCount; k++) slotOfId[freeIds[k]] = NONE;
+
+        readCellLists();
+    }
+
+    // Списки по клеткам из снимка: ссылки взаимны и не выходят из клетки, у клетки одна
+    // голова, каждая живая особь достижима от головы своей клетки — иначе firstAt
+    // зациклится или не найдёт особь. Мёртвый слот (убит вне тика) уже вынут из списков
+    private void readCellLists() throws IOException {
+        for (int slot = 0; slot < count; slot++) {
+            int prev = prevInCell[slot];
+            int next = nextInCell[slot];
+            boolean linked = !alive[slot]
+                    ? prev == NONE && next == NONE
+                    : (prev == NONE || nextInCell[prev] == slot && x[prev] == x[slot] && y[prev] == y[slot])
+                    && (next == NONE || prevInCell[next] == slot && x[next] == x[slot] && y[next] == y[slot]);
+            if (!linked) {
+                throw new IOException("Неверный список клетки в снимке у слота " + slot);
+            }
+            if (!alive[slot] || prev != NONE) continue;
+            if (getHead(x[slot], y[slot]) != NONE) {
+                throw new IOException("Две головы списка клетки в снимке: " + x[slot] + "," + y[slot]);
+            }
+            setHead(x[slot], y[slot], slot);
+        }
+
+        // Взаимные ссылки и одна голова на клетку оставляют единственный изъян — кольцо
+        // без головы; его особи не достижимы обходом от голов
+        int reached = 0;
+        int living = 0;
+        for (int slot = 0; slot < count; slot++) {
+            if (!alive[slot]) continue;
+            living++;
+            if (prevInCell[slot] != NONE) continue;
+            for (int s = slot; s != NONE; s = nextInCell[s]) reached++;
+        }
+        if (reached != living) {
+            throw new IOException("Кольцо в списке клетки в снимке: достижимо " + reached + " из " + living);
+        }
+    }
+
+    private int getHead(int cx, int cy) {
+        int cell = grid.index(cx, cy);
+        int[] heads = cellHead[Grid.chunkOf(cell)];
+        return heads != null ? heads[Grid.localOf(cell)] : NONE;
+    }
+
+    private void setHead(int cx, int cy, int slot) {
+        int cell = grid.index(cx, cy);
+        headsOf(Grid.chunkOf(cell))[Grid.localOf(cell)] = slot;
+    }
+
+    private int[] headsOf(int chunk) {
+        int[] heads = cellHead[chunk];
+        if (heads == null) {
+            heads = cellHead[chunk] = new int[Grid.CHUNK_CELLS];
+            Arrays.fill(heads, NONE);
+        }
+        return heads;
+    }
+
+    private void link(int slot) {
+        int head = getHead(x[slot], y[slot]);
+        prevInCell[slot] = NONE;
+        nextInCell[slot] = head;
+        if (head != NONE) prevInCell[head] = slot;
+        setHead(x[slot], y[slot], slot);
+    }
+
+    private void unlink(int slot) {
+        int prev = prevInCell[slot];
+        int next = nextInCell[slot];
+        if (prev != NONE) {
+            nextInCell[prev] = next;
+        } else if (getHead(x[slot], y[slot]) == slot) {
+            setHead(x[slot], y[slot], next);
+        }
+        if (next != NONE) prevInCell[next] = prev;
+        prevInCell[slot] = NONE;
+        nextInCell[slot] = NONE;
+    }
+
+    protected void moveTo(int slot, int newX, int newY) {
+        if (newX == x[slot] && newY == y[slot]) return;
+        unlink(slot);
+        x[slot] = newX;
+        y[slot] = newY;
+        link(slot);
+    }
+
+    protected void addHunger(int slot, int amount) {
+        hunger[slot] = (short) Math.min(Short.MAX_VALUE, hunger[slot] + amount);
+    }
+
+    protected void countReproduction(int slot) {
+        if (reproductionCounter[slot] < Short.MAX_VALUE) reproductionCounter[slot]++;
+    }
+
+    // Выбирает случайный шаг в planX/planY; сам переход делает commit
+    protected void planRandomMove(World world, int slot) {
+        int[] dir = DIRECTIONS[Rng.nextInt(rng, slot, DIRECTIONS.length)];
+        int newX = x[slot] + dir[0];
+        int newY = y[slot] + dir[1];
+
+        // Зимой не даем двигаться в замерзшие слои
+        if (world.getSeason() == Season.WINTER && newY < World.FROZEN_TOP_LAYERS) {
+            return;
+        }
+
+        if (world.isValidPosition(newX, newY) && !world.isWater(newX, newY)) {
+            planX[slot] = newX;
+            planY[slot] = newY;
+            intent[slot] |= INTENT_MOVE;
+        }
+    }
+
+    protected void checkForFood(World world, int slot) {
+        int cx = x[slot], cy = y[slot];
+
+        // Проверяем и едим червей (если текущее животное может их есть)
+        if (this.canEatWorms()) {
+            int worm = world.getWormAt(cx, cy);
+            if (worm >= 0) {
+                eatWorm(world, slot, worm);
+            }
+        }
+
+        // Проверяем и едим корни
+        if (this.canEatRoots() && world.hasRootAt(cx, cy)) {
+            eatRoot(world, slot);
+        }
+
+        // Проверяем и едим грибы
+        Mushroom mushroom = world.getMushroomAt(cx, cy);
+        if (mushroom != null && mushroom.isAlive() && this.canEatMushrooms()) {
+            eat(world, slot, mushroom);
+        }
+    }
+
+    protected boolean canEatWorms() {
+        return false;
+    }
+
+    protected boolean canEatRoots() {
+        return true;
+    }
+
+    protected boolean canEatMushrooms() {
+        return true;
+    }
+
+    protected void eatWorm(World world, int slot, int wormSlot) {
+        hunger[slot] = (short) Math.max(0, hunger[slot] - WORM_FOOD_VALUE);
+        world.killWorm(wormSlot);
+    }
+
+    protected void eatRoot(World world, int slot) {
+        hunger[slot] = (short) Math.max(0, hunger[slot] - ROOT_FOOD_VALUE);
+        world.removeRoot(x[slot], y[slot]);
+    }
+
+    protected void eat(World world, int slot, Mushroom mushroom) {
+        mushroom.consume();
+        hunger[slot] = (short) Math.max(0, hunger[slot] - MUSHROOM_FOOD_VALUE);
+        world.removeMushroom(mushroom);
+    }
+
+    // Первая фаза тика: только своя строка и неизменяемое в фазе состояние мира
+    public abstract void plan(World world, int slot);
+
+    // Вторая фаза: применяет намерение к миру; вызывается по порядку слотов
+    public abstract void commit(World world, int slot);
+
+    // Тик одной особи целиком, без параллельной фазы
+    public void update(World world, int slot) {
+        plan(world, slot);
+        commit(world, slot);
+    }
+}
@@ -0,0 +1,60 @@
+// Видимая часть мира: левый верхний угол экрана в координатах клеток и масштаб
+// в пикселях на клетку. Сама камера про отрисовку ничего не знает
+public class Camera {
+    public static final double MIN_ZOOM = 1.0 / 16;
+    public static final double MAX_ZOOM = 64;
+
+    private double x;
+    private double y;
+    private double zoom;
+
+    public Camera(double zoom) {
+        this.zoom = zoom;
+    }
+
+    public double getX() {
+        return x;
+    }
+
+    public double getY() {
+        return y;
+    }
+
+    public double getZoom() {
+        return zoom;
+    }
+
+    // Сдвиг вслед за мышью, в пикселях экрана
+    public void pan(double dxPixels, double dyPixels) {
+        x -= dxPixels / zoom;
+        y -= dyPixels / zoom;
+    }
+
+    // Масштабирует так, чтобы клетка под точкой экрана (px, py) осталась на месте
+    public void zoomAt(double factor, double px, double py) {
+        double cellX = x + px / zoom;
+        double cellY = y + py / zoom;
+        zoom = Math.max(MIN_ZOOM, Math.min(MAX_ZOOM, zoom * factor));
+        x = cellX - px / zoom;
+        y = cellY - py / zoom;
+    }
+
+    // Не даёт увести мир с экрана: если он меньше экрана, ставим его по центру
+    public void clamp(int worldWidth, int worldHeight, double screenWidth, double screenHeight) {
+        x = clampAxis(x, worldWidth, screenWidth / zoom);
+        y = clampAxis(y, worldHeight, screenHeight / zoom);
+    }
+
+    private static double clampAxis(double pos, int worldSize, double visible) {
+        if (visible >= worldSize) return (worldSize - visible) / 2;
+        return Math.max(0, Math.min(worldSize - visible, pos));
+    }
+
+    public double toScreenX(double cellX) {
+        return (cellX - x) * zoom;
+    }
+
+    public double toScreenY(double cellY) {
+        return (cellY - y) * zoom;
+    }
+}
@@ -0,0 +1,257 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+// Запись прогона: журнал событий events.bin (только дописывается) и опорные кадры —
+// снимки мира (WorldSnapshot) каждые keyframeInterval тиков в той же папке.
+// Журнал подписывается на мир как обычный слушатель. Перемещения отдельных событий
+// не имеют: в конце тика позиции сравниваются с записанными, и пишутся только изменившиеся.
+//
+// Формат events.bin (little-endian): MAGIC, VERSION, ширина, высота, тик начала записи,
+// интервал кадров; дальше записи «тег + поля». Записи тика заканчиваются TICK_END
+public final class EventJournal implements WorldListener, Closeable {
+    static final String EVENTS_FILE = "events.bin";
+    static final int MAGIC = 0x4E524A4D; // "MJRN"
+    static final int VERSION = 1;
+
+    static final byte TICK_END = 1;        // tick
+    static final byte MOLE_ADDED = 2;      // id, x, y, renderX, renderY
+    static final byte MOLE_REMOVED = 3;    // id
+    static final byte MOLE_MOVED = 4;      // id, x, y, renderX, renderY
+    static final byte WORM_ADDED = 5;      // id, x, y
+    static final byte WORM_REMOVED = 6;    // id
+    static final byte WORM_MOVED = 7;      // id, x, y
+    static final byte MUSHROOM_ADDED = 8;  // x, y
+    static final byte MUSHROOM_REMOVED = 9;
+    static final byte ROOT_ADDED = 10;     // x, y
+    static final byte ROOT_REMOVED = 11;
+    static final byte TUNNEL_DUG = 12;     // x, y
+    static final byte TUNNEL_FADED = 13;
+
+    private final World world;
+    private final Path directory;
+    private final int keyframeInterval;
+    private final long startTick;
+    private final FileChannel channel;
+    private final SnapshotWriter out;
+
+    // Последние записанные позиции по id — с ними сравнивается конец тика
+    private int[] moleX = new int[64];
+    private int[] moleY = new int[64];
+    private float[] moleRenderX = new float[64];
+    private float[] moleRenderY = new float[64];
+    private int[] wormX = new int[64];
+    private int[] wormY = new int[64];
+
+    private EventJournal(World world, Path directory, int keyframeInterval) throws IOException {
+        this.world = world;
+        this.directory = directory;
+        this.keyframeInterval = keyframeInterval;
+        this.startTick = world.getTick();
+        Files.createDirectories(directory);
+        this.channel = FileChannel.open(directory.resolve(EVENTS_FILE), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        this.out = new SnapshotWriter(channel);
+    }
+
+    // Начинает запись с текущего тика мира: первый кадр — состояние на этот тик
+    public static EventJournal start(World world, Path directory, int keyframeInterval) throws IOException {
+        if (keyframeInterval <= 0) {
+            throw new IllegalArgumentException("Интервал кадров должен быть положительным: " + keyframeInterval);
+        }
+        EventJournal journal = new EventJournal(world, directory, keyframeInterval);
+        journal.out.putInt(MAGIC);
+        journal.out.putInt(VERSION);
+        journal.out.putInt(world.width);
+        journal.out.putInt(world.height);
+        journal.out.putLong(journal.startTick);
+        journal.out.putInt(keyframeInterval);
+
+        Moles moles = world.getMoles();
+        for (int i = 0; i < moles.size(); i++) journal.rememberMole(moles, i);
+        Worms worms = world.getWorms();
+        for (int i = 0; i < worms.size(); i++) journal.rememberWorm(worms, i);
+
+        journal.writeKeyframe(journal.startTick);
+        world.addListener(journal);
+        return journal;
+    }
+
+    static Path keyframePath(Path directory, long tick) {
+        return directory.resolve("keyframe-" + tick + ".snap");
+    }
+
+    @Override
+    public void moleAdded(int id) {
+        Moles moles = world.getMoles();
+        int slot = moles.slotOf(id);
+        rememberMole(moles, slot);
+        write(MOLE_ADDED, id);
+        writeMolePosition(id);
+    }
+
+    @Override
+    public void moleRemoved(int id) {
+        write(MOLE_REMOVED, id);
+    }
+
+    @Override
+    public void wormAdded(int id) {
+        Worms worms = world.getWorms();
+        rememberWorm(worms, worms.slotOf(id));
+        write(WORM_ADDED, id);
+        writeCell(wormX[id], wormY[id]);
+    }
+
+    @Override
+    public void wormRemoved(int id) {
+        write(WORM_REMOVED, id);
+    }
+
+    @Override
+    public void mushroomAdded(Mushroom mushroom) {
+        writeCell(MUSHROOM_ADDED, mushroom.getX(), mushroom.getY());
+    }
+
+    @Override
+    public void mushroomRemoved(Mushroom mushroom) {
+        writeCell(MUSHROOM_REMOVED, mushroom.getX(), mushroom.getY());
+    }
+
+    @Override
+    public void rootAdded(int x, int y) {
+        writeCell(ROOT_ADDED, x, y);
+    }
+
+    @Override
+    public void rootRemoved(int x, int y) {
+        writeCell(ROOT_REMOVED, x, y);
+    }
+
+    @Override
+    public void tunnelDug(int x, int y) {
+        writeCell(TUNNEL_DUG, x, y);
+    }
+
+    @Override
+    public void tunnelFaded(int x, int y) {
+        writeCell(TUNNEL_FADED, x, y);
+    }
+
+    @Override
+    public void tickEnded(long tick) {
+        Moles moles = world.getMoles();
+        for (int i = 0; i < moles.size(); i++) {
+            int id = moles.getId(i);
+            if (moles.getX(i) != moleX[id] || moles.getY(i) != moleY[id]
+                    || (float) moles.getRenderX(i) != moleRenderX[id]
+                    || (float) moles.getRenderY(i) != moleRenderY[id]) {
+                rememberMole(moles, i);
+                write(MOLE_MOVED, id);
+                writeMolePosition(id);
+            }
+        }
+        Worms worms = world.getWorms();
+        for (int i = 0; i < worms.size(); i++) {
+            int id = worms.getId(i);
+            if (worms.getX(i) != wormX[id] || worms.getY(i) != wormY[id]) {
+                rememberWorm(worms, i);
+                write(WORM_MOVED, id);
+                writeCell(wormX[id], wormY[id]);
+            }
+        }
+
+        try {
+            out.putByte(TICK_END);
+            out.putLong(tick);
+            if ((tick - startTick) % keyframeInterval == 0) writeKeyframe(tick);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Дописывает накопленное и отписывается от мира
+    @Override
+    public void close() throws IOException {
+        world.removeListener(this);
+        out.flush();
+        channel.close();
+    }
+
+    // Журнал перед кадром сбрасывается на диск: кадр не опережает события
+    private void writeKeyframe(long tick) throws IOException {
+        out.flush();
+        WorldSnapshot.save(world, keyframePath(directory, tick));
+    }
+
+    private void rememberMole(Moles moles, int slot) {
+        int id = moles.getId(slot);
+        if (id >= moleX.length) {
+            int size = Math.max(id + 1, moleX.length * 2);
+            moleX = Arrays.copyOf(moleX, size);
+            moleY = Arrays.copyOf(moleY, size);
+            moleRenderX = Arrays.copyOf(moleRenderX, size);
+            moleRenderY = Arrays.copyOf(moleRenderY, size);
+        }
+        moleX[id] = moles.getX(slot);
+        moleY[id] = moles.getY(slot);
+        moleRenderX[id] = (float) moles.getRenderX(slot);
+        moleRenderY[id] = (float) moles.getRenderY(slot);
+    }
+
+    private void rememberWorm(Worms worms, int slot) {
+        int id = worms.getId(slot);
+        if (id >= wormX.length) {
+            int size = Math.max(id + 1, wormX.length * 2);
+            wormX = Arrays.copyOf(wormX, size);
+            wormY = Arrays.copyOf(wormY, size);
+        }
+        wormX[id] = worms.getX(slot);
+        wormY[id] = worms.getY(slot);
+    }
+
+    // Слушатель не может бросить IOException, поэтому ошибки записи оборачиваются
+    private void write(byte tag, int id) {
+        try {
+            out.putByte(tag);
+            out.putInt(id);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void writeCell(byte tag, int x, int y) {
+        try {
+            out.putByte(tag);
+            out.putInt(x);
+            out.putInt(y);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void writeCell(int x, int y) {
+        try {
+            out.putInt(x);
+            out.putInt(y);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void writeMolePosition(int id) {
+        try {
+            out.putInt(moleX[id]);
+            out.putInt(moleY[id]);
+            out.putInt(Float.floatToRawIntBits(moleRenderX[id]));
+            out.putInt(Float.floatToRawIntBits(moleRenderY[id]));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
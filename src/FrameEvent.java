@@ -0,0 +1,36 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+// Кадр WorldView в JDK Flight Recorder — пара к TickEvent: по записи видно,
+// уходит ли время в симуляцию или в отрисовку окна камеры
+@Name("downtown.Frame")
+@Label("Кадр")
+@Category("Симуляция")
+@Description("Длительность этапов отрисовки видимого окна")
+@StackTrace(false)
+final class FrameEvent extends jdk.jfr.Event {
+    static final EventType TYPE = EventType.getEventType(FrameEvent.class);
+
+    @Label("Масштаб")
+    double zoom;
+
+    @Label("Видимых клеток")
+    long visibleCells;
+
+    @Label("Клетки")
+    @Timespan(Timespan.NANOSECONDS)
+    long cells;
+
+    @Label("Сетка")
+    @Timespan(Timespan.NANOSECONDS)
+    long grid;
+
+    @Label("Существа")
+    @Timespan(Timespan.NANOSECONDS)
+    long entities;
+}
@@ -0,0 +1,305 @@
+import java.io.IOException;
+import java.util.Arrays;
+
+// Клеточные слои мира, разбитые на квадраты CHUNK_SIZE × CHUNK_SIZE. Чанк заводится при
+// первой записи в него; нетронутый чанк читается как общий «пустой» — земля без воды,
+// корней и туннелей. Память поэтому растёт с активностью, а не с площадью поля.
+//
+// Клетка задаётся одним int: номер чанка << CHUNK_CELL_BITS | номер клетки в чанке,
+// внутри чанка клетки лежат по строкам. Признаки клетки упакованы в байт, срок
+// туннеля хранится отдельным столбцом char
+final class Grid {
+    static final int CHUNK_BITS = 6;
+    static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    static final int CHUNK_CELL_BITS = 2 * CHUNK_BITS;
+    static final int CHUNK_CELLS = 1 << CHUNK_CELL_BITS;
+
+    static final int WATER = 1;
+    static final int EMPTY = 2;
+    static final int DUNG = 4;
+    static final int NEAR_WATER = 8;    // вода не дальше World.NEAR_WATER_RADIUS
+    static final int ROOT = 16;         // в клетке живой корень
+    static final int ROOT_TIP = 32;     // клетка записана в список растущих кончиков
+    static final int TUNNEL = 64;       // туннель есть и стоит в колесе осыпания
+    private static final int FLAG_BITS = 7;
+
+    // Поля воды считаются по чанку с полями WATER_FIELD_RADIUS вокруг; дальше — «воды нет»
+    static final int WATER_FIELD_RADIUS = 10;
+    static final int FAR_FROM_WATER = WATER_FIELD_RADIUS + 1;
+
+    private static final class Chunk {
+        final byte[] flags = new byte[CHUNK_CELLS];
+        // Момент осыпания туннеля по модулю 2^16; имеет смысл только при флаге TUNNEL.
+        // Заводится с первым туннелем в чанке
+        char[] tunnelExpiry;
+        // Следующая клетка в том же слоте колеса осыпания (см. World.scheduleFade);
+        // заводится вместе с tunnelExpiry
+        int[] fadeNext;
+
+        // Поля воды; null — в пределах WATER_FIELD_RADIUS от чанка воды нет
+        byte[] waterDistance;
+        byte[] waterCount;
+        byte[] nearestWaterDx;
+        byte[] nearestWaterDy;
+    }
+
+    final int width;
+    final int height;
+    final int chunksX;
+    final int chunksY;
+
+    private final Chunk[] chunks;
+    private int allocatedChunks = 0;
+
+    Grid(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.chunksX = (width + CHUNK_MASK) >> CHUNK_BITS;
+        this.chunksY = (height + CHUNK_MASK) >> CHUNK_BITS;
+        this.chunks = new Chunk[chunksX * chunksY];
+    }
+
+    int index(int x, int y) {
+        int chunk = (y >> CHUNK_BITS) * chunksX + (x >> CHUNK_BITS);
+        return chunk << CHUNK_CELL_BITS | (y & CHUNK_MASK) << CHUNK_BITS | (x & CHUNK_MASK);
+    }
+
+    int x(int cell) {
+        return (chunkOf(cell) % chunksX) << CHUNK_BITS | (cell & CHUNK_MASK);
+    }
+
+    int y(int cell) {
+        return (chunkOf(cell) / chunksX) << CHUNK_BITS | ((cell >> CHUNK_BITS) & CHUNK_MASK);
+    }
+
+    static int chunkOf(int cell) {
+        return cell >>> CHUNK_CELL_BITS;
+    }
+
+    static int localOf(int cell) {
+        return cell & (CHUNK_CELLS - 1);
+    }
+
+    int chunkCount() {
+        return chunks.length;
+    }
+
+    int allocatedChunkCount() {
+        return allocatedChunks;
+    }
+
+    boolean isAllocated(int chunk) {
+        return chunks[chunk] != null;
+    }
+
+    boolean contains(int x, int y) {
+        return x >= 0 && x < width && y >= 0 && y < height;
+    }
+
+    // Номер клетки из внешних данных (снимка): чанк существует и клетка не за краем поля
+    boolean isCell(int cell) {
+        return cell >= 0 && chunkOf(cell) < chunks.length && x(cell) < width && y(cell) < height;
+    }
+
+    boolean has(int cell, int flag) {
+        Chunk chunk = chunks[chunkOf(cell)];
+        return chunk != null && (chunk.flags[localOf(cell)] & flag) != 0;
+    }
+
+    // Все признаки клетки разом
+    int flags(int cell) {
+        Chunk chunk = chunks[chunkOf(cell)];
+        return chunk != null ? chunk.flags[localOf(cell)] : 0;
+    }
+
+    // За пределами поля ни одного признака нет
+    boolean has(int x, int y, int flag) {
+        return contains(x, y) && has(index(x, y), flag);
+    }
+
+    void set(int cell, int flag) {
+        allocate(chunkOf(cell)).flags[localOf(cell)] |= flag;
+    }
+
+    void clear(int cell, int flag) {
+        Chunk chunk = chunks[chunkOf(cell)];
+        if (chunk != null) chunk.flags[localOf(cell)] &= ~flag;
+    }
+
+    char getTunnelExpiry(int cell) {
+        Chunk chunk = chunks[chunkOf(cell)];
+        return chunk != null && chunk.tunnelExpiry != null ? chunk.tunnelExpiry[localOf(cell)] : 0;
+    }
+
+    void setTunnelExpiry(int cell, int time) {
+        tunnelChunk(chunkOf(cell)).tunnelExpiry[localOf(cell)] = (char) time;
+    }
+
+    // Заводит заранее чанк клетки со столбцами туннелей: полосы параллельного
+    // коммита не должны заводить один чанк одновременно (StripPartition.commitAll)
+    void prepareTunnels(int cell) {
+        tunnelChunk(chunkOf(cell));
+    }
+
+    // Только для клеток со сроком туннеля
+    int getFadeNext(int cell) {
+        return chunks[chunkOf(cell)].fadeNext[localOf(cell)];
+    }
+
+    void setFadeNext(int cell, int next) {
+        chunks[chunkOf(cell)].fadeNext[localOf(cell)] = next;
+    }
+
+    // Расстояние до воды по Чебышёву, не больше FAR_FROM_WATER
+    int getWaterDistance(int cell) {
+        Chunk chunk = chunks[chunkOf(cell)];
+        return chunk != null && chunk.waterDistance != null
+                ? chunk.waterDistance[localOf(cell)] : FAR_FROM_WATER;
+    }
+
+    // Число водных клеток в квадрате 11×11 вокруг клетки (см. World.getWaterInfluence)
+    int getWaterCount(int cell) {
+        Chunk chunk = chunks[chunkOf(cell)];
+        return chunk != null && chunk.waterCount != null ? chunk.waterCount[localOf(cell)] : 0;
+    }
+
+    int getNearestWaterDx(int cell) {
+        Chunk chunk = chunks[chunkOf(cell)];
+        return chunk != null && chunk.nearestWaterDx != null
+                ? chunk.nearestWaterDx[localOf(cell)] : World.NO_NEAREST_WATER;
+    }
+
+    int getNearestWaterDy(int cell) {
+        Chunk chunk = chunks[chunkOf(cell)];
+        return chunk != null && chunk.nearestWaterDy != null
+                ? chunk.nearestWaterDy[localOf(cell)] : World.NO_NEAREST_WATER;
+    }
+
+    void setWaterFields(int chunk, byte[] distance, byte[] count, byte[] nearestDx, byte[] nearestDy) {
+        Chunk c = allocate(chunk);
+        c.waterDistance = distance;
+        c.waterCount = count;
+        c.nearestWaterDx = nearestDx;
+        c.nearestWaterDy = nearestDy;
+    }
+
+    // Снимок: заведённые чанки, у каждого — битовые слои только тех признаков, что в нём
+    // встречаются, сроки туннелей подряд по клеткам с туннелем и поля воды, если есть.
+    // Поля можно было бы построить заново, но на большом поле это дольше самого чтения
+    void write(SnapshotWriter out) throws IOException {
+        long[] plane = new long[CHUNK_CELLS / Long.SIZE];
+        char[] expiry = new char[CHUNK_CELLS];
+        out.putInt(allocatedChunks);
+        for (int c = 0; c < chunks.length; c++) {
+            Chunk chunk = chunks[c];
+            if (chunk == null) continue;
+            int present = 0;
+            for (int i = 0; i < CHUNK_CELLS; i++) present |= chunk.flags[i];
+            out.putInt(c);
+            out.putByte(present);
+
+            for (int bit = 0; bit < FLAG_BITS; bit++) {
+                int flag = 1 << bit;
+                if ((present & flag) == 0) continue;
+                Arrays.fill(plane, 0);
+                for (int i = 0; i < CHUNK_CELLS; i++) {
+                    if ((chunk.flags[i] & flag) != 0) plane[i >> 6] |= 1L << i;
+                }
+                out.putLongs(plane, plane.length);
+            }
+
+            if ((present & TUNNEL) != 0) {
+                int n = 0;
+                for (int i = 0; i < CHUNK_CELLS; i++) {
+                    if ((chunk.flags[i] & TUNNEL) != 0) expiry[n++] = chunk.tunnelExpiry[i];
+                }
+                out.putChars(expiry, n);
+            }
+
+            boolean fields = chunk.waterDistance != null;
+            out.putByte(fields ? 1 : 0);
+            if (fields) {
+                out.putBytes(chunk.waterDistance, CHUNK_CELLS);
+                out.putBytes(chunk.waterCount, CHUNK_CELLS);
+                out.putBytes(chunk.nearestWaterDx, CHUNK_CELLS);
+                out.putBytes(chunk.nearestWaterDy, CHUNK_CELLS);
+            }
+        }
+    }
+
+    // Читает в пустую сетку того же размера
+    void read(SnapshotReader in) throws IOException {
+        long[] plane = new long[CHUNK_CELLS / Long.SIZE];
+        char[] expiry = new char[CHUNK_CELLS];
+        int count = in.getInt();
+        for (int k = 0; k < count; k++) {
+            int c = in.getInt();
+            if (c < 0 || c >= chunks.length || chunks[c] != null) {
+                throw new IOException("Неверный номер чанка в снимке: " + c);
+            }
+            Chunk chunk = allocate(c);
+            int present = in.getByte();
+
+            for (int bit = 0; bit < FLAG_BITS; bit++) {
+                int flag = 1 << bit;
+                if ((present & flag) == 0) continue;
+                in.getLongs(plane, plane.length);
+                // Обходим только установленные биты: слой обычно почти пуст
+                for (int w = 0; w < plane.length; w++) {
+                    for (long bits = plane[w]; bits != 0; bits &= bits - 1) {
+                        chunk.flags[w << 6 | Long.numberOfTrailingZeros(bits)] |= (byte) flag;
+                    }
+                }
+            }
+
+            if ((present & TUNNEL) != 0) {
+                int n = 0;
+                for (int i = 0; i < CHUNK_CELLS; i++) {
+                    if ((chunk.flags[i] & TUNNEL) != 0) n++;
+                }
+                in.getChars(expiry, n);
+                chunk.tunnelExpiry = new char[CHUNK_CELLS];
+                chunk.fadeNext = new int[CHUNK_CELLS];
+                n = 0;
+                for (int i = 0; i < CHUNK_CELLS; i++) {
+                    if ((chunk.flags[i] & TUNNEL) != 0) chunk.tunnelExpiry[i] = expiry[n++];
+                }
+            }
+
+            if (in.getByte() != 0) {
+                chunk.waterDistance = new byte[CHUNK_CELLS];
+                chunk.waterCount = new byte[CHUNK_CELLS];
+                chunk.nearestWaterDx = new byte[CHUNK_CELLS];
+                chunk.nearestWaterDy = new byte[CHUNK_CELLS];
+                in.getBytes(chunk.waterDistance, CHUNK_CELLS);
+                in.getBytes(chunk.waterCount, CHUNK_CELLS);
+                in.getBytes(chunk.nearestWaterDx, CHUNK_CELLS);
+                in.getBytes(chunk.nearestWaterDy, CHUNK_CELLS);
+            }
+        }
+    }
+
+    // Заводит все чанки сразу вместе со столбцами туннелей — см. World.reserveCapacity
+    void allocateAll() {
+        for (int c = 0; c < chunks.length; c++) tunnelChunk(c);
+    }
+
+    private Chunk tunnelChunk(int chunk) {
+        Chunk c = allocate(chunk);
+        if (c.tunnelExpiry == null) {
+            c.tunnelExpiry = new char[CHUNK_CELLS];
+            c.fadeNext = new int[CHUNK_CELLS];
+        }
+        return c;
+    }
+
+    private Chunk allocate(int chunk) {
+        Chunk c = chunks[chunk];
+        if (c == null) {
+            c = chunks[chunk] = new Chunk();
+            allocatedChunks++;
+        }
+        return c;
+    }
+}
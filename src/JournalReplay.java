@@ -0,0 +1,177 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+// Воспроизведение записи EventJournal. Состояние на тик собирается из ближайшего
+// предшествующего опорного кадра и событий журнала после него, правила не выполняются.
+// При перемотке вперёд события докатываются от текущего состояния, без нового кадра
+public final class JournalReplay implements Closeable {
+    private final Path directory;
+    private final FileChannel channel;
+    private final SnapshotReader in;
+    public final int width;
+    public final int height;
+    private final long firstTick;
+    private final int keyframeInterval;
+
+    // ends[k] — позиция в журнале сразу после записей тика firstTick + k
+    // (для k = 0 — конец заголовка)
+    private long[] ends = new long[1024];
+    private long lastTick;
+
+    private ReplayState state;
+
+    private JournalReplay(Path directory) throws IOException {
+        this.directory = directory;
+        this.channel = FileChannel.open(directory.resolve(EventJournal.EVENTS_FILE), StandardOpenOption.READ);
+        this.in = new SnapshotReader(channel);
+        if (in.remaining() < 28 || in.getInt() != EventJournal.MAGIC) {
+            channel.close();
+            throw new IOException("Не журнал прогона: " + directory);
+        }
+        int version = in.getInt();
+        if (version != EventJournal.VERSION) {
+            channel.close();
+            throw new IOException("Неподдерживаемая версия журнала " + version + ", ожидается " + EventJournal.VERSION);
+        }
+        this.width = in.getInt();
+        this.height = in.getInt();
+        this.firstTick = in.getLong();
+        this.keyframeInterval = in.getInt();
+        buildIndex();
+    }
+
+    public static JournalReplay open(Path directory) throws IOException {
+        return new JournalReplay(directory);
+    }
+
+    public long getFirstTick() {
+        return firstTick;
+    }
+
+    public long getLastTick() {
+        return lastTick;
+    }
+
+    // Видимое состояние на конец тика tick. Возвращаемый объект живёт до следующего seek
+    public ReplayState seek(long tick) throws IOException {
+        if (tick < firstTick || tick > lastTick) {
+            throw new IllegalArgumentException("Тик " + tick + " вне записи [" + firstTick + ", " + lastTick + "]");
+        }
+        long keyframe = firstTick + (tick - firstTick) / keyframeInterval * keyframeInterval;
+        if (state == null || state.getTick() > tick || state.getTick() < keyframe) {
+            state = ReplayState.of(WorldSnapshot.load(EventJournal.keyframePath(directory, keyframe)));
+        }
+        apply(tick);
+        return state;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    // Один проход по журналу: где кончается каждый тик. Недописанный хвост
+    // (прогон оборвался посреди тика) отбрасывается
+    private void buildIndex() throws IOException {
+        ends[0] = in.position();
+        lastTick = firstTick;
+        while (in.remaining() > 0) {
+            byte tag = in.getByte();
+            int size = recordSize(tag);
+            if (in.remaining() < size) break;
+            if (tag != EventJournal.TICK_END) {
+                in.skip(size);
+                continue;
+            }
+            long tick = in.getLong();
+            if (tick != lastTick + 1) throw new IOException("Пропуск в журнале перед тиком " + tick);
+            lastTick = tick;
+            int k = (int) (tick - firstTick);
+            if (k == ends.length) ends = Arrays.copyOf(ends, k * 2);
+            ends[k] = in.position();
+        }
+    }
+
+    private void apply(long tick) throws IOException {
+        if (state.getTick() == tick) return;
+        in.seek(ends[(int) (state.getTick() - firstTick)]);
+        while (state.getTick() < tick) {
+            byte tag = in.getByte();
+            switch (tag) {
+                case EventJournal.TICK_END:
+                    state.endTick(in.getLong());
+                    break;
+                case EventJournal.MOLE_ADDED:
+                    state.addMole(in.getInt(), in.getInt(), in.getInt(),
+                            Float.intBitsToFloat(in.getInt()), Float.intBitsToFloat(in.getInt()));
+                    break;
+                case EventJournal.MOLE_REMOVED:
+                    state.removeMole(in.getInt());
+                    break;
+                case EventJournal.MOLE_MOVED:
+                    state.moveMole(in.getInt(), in.getInt(), in.getInt(),
+                            Float.intBitsToFloat(in.getInt()), Float.intBitsToFloat(in.getInt()));
+                    break;
+                case EventJournal.WORM_ADDED:
+                    state.addWorm(in.getInt(), in.getInt(), in.getInt());
+                    break;
+                case EventJournal.WORM_REMOVED:
+                    state.removeWorm(in.getInt());
+                    break;
+                case EventJournal.WORM_MOVED:
+                    state.moveWorm(in.getInt(), in.getInt(), in.getInt());
+                    break;
+                case EventJournal.MUSHROOM_ADDED:
+                    state.addMushroom(in.getInt(), in.getInt());
+                    break;
+                case EventJournal.MUSHROOM_REMOVED:
+                    state.removeMushroom(in.getInt(), in.getInt());
+                    break;
+                case EventJournal.ROOT_ADDED:
+                    state.addRoot(in.getInt(), in.getInt());
+                    break;
+                case EventJournal.ROOT_REMOVED:
+                    state.removeRoot(in.getInt(), in.getInt());
+                    break;
+                case EventJournal.TUNNEL_DUG:
+                    state.digTunnel(in.getInt(), in.getInt());
+                    break;
+                case EventJournal.TUNNEL_FADED:
+                    state.fadeTunnel(in.getInt(), in.getInt());
+                    break;
+                default:
+                    throw new IOException("Неизвестная запись журнала: " + tag);
+            }
+        }
+    }
+
+    // Байт полей после тега
+    private static int recordSize(byte tag) throws IOException {
+        switch (tag) {
+            case EventJournal.TICK_END:
+                return 8;
+            case EventJournal.MOLE_ADDED:
+            case EventJournal.MOLE_MOVED:
+                return 20;
+            case EventJournal.MOLE_REMOVED:
+            case EventJournal.WORM_REMOVED:
+                return 4;
+            case EventJournal.WORM_ADDED:
+            case EventJournal.WORM_MOVED:
+                return 12;
+            case EventJournal.MUSHROOM_ADDED:
+            case EventJournal.MUSHROOM_REMOVED:
+            case EventJournal.ROOT_ADDED:
+            case EventJournal.ROOT_REMOVED:
+            case EventJournal.TUNNEL_DUG:
+            case EventJournal.TUNNEL_FADED:
+                return 8;
+            default:
+                throw new IOException("Неизвестная запись журнала: " + tag);
+        }
+    }
+}
@@ -10,8 +10,11 @@ import javafx.scene.control.Slider;
 import javafx.scene.layout.BorderPane;
 
 public class Main extends Application {
-    private static final int WIDTH = 80;
-    private static final int HEIGHT = 60;
+    private static final int DEFAULT_WIDTH = 80;
+    private static final int DEFAULT_HEIGHT = 60;
+    // Больше этого окно не делаем: крупный мир смотрится через камеру
+    private static final int MAX_VIEW_WIDTH = 1280;
+    private static final int MAX_VIEW_HEIGHT = 800;
     private static final int MIN_MOLES = 10;
     private static final int MAX_MOLES = 50;
     private static final int DEFAULT_MOLES = 20;
@@ -19,9 +22,10 @@ public class Main extends Application {
     private static final int MAX_WATER = 30;
     private static final int MIN_WATER_SIZE = 3;
     private static final int MAX_WATER_SIZE = 8;
-    public static final int FROZEN_TOP_LAYERS = 20;
 
     private World world;
+    private WorldView view;
+    private TickScheduler scheduler;
     private AnimationTimer timer;
     private double speedMultiplier = 1.0;
     private boolean isPaused = false;
@@ -128,11 +132,16 @@ public class Main extends Application {
     }
 
     private void startSimulation(Stage stage, Season season, int moleCount, int waterCount) {
-        world = new World(WIDTH, HEIGHT, moleCount,
+        // Размер поля можно задать при запуске: --width=2000 --height=1500
+        int width = namedInt("width", DEFAULT_WIDTH);
+        int height = namedInt("height", DEFAULT_HEIGHT);
+        world = new World(width, height, moleCount,
                 waterCount, MIN_WATER_SIZE, MAX_WATER_SIZE, season);
+        view = new WorldView(world);
+        scheduler = new TickScheduler(world);
 
         BorderPane root = new BorderPane();
-        root.setCenter(world);
+        root.setCenter(view);
 
         // Панель управления
         Label speedLabel = new Label("Скорость: 1.0x");
@@ -155,10 +164,12 @@ public class Main extends Application {
         controls.setStyle("-fx-padding: 10; -fx-alignment: center;");
         root.setBottom(controls);
 
-        Scene scene = new Scene(root, WIDTH * World.CELL_SIZE,
-                HEIGHT * World.CELL_SIZE + 60);
+        Scene scene = new Scene(root,
+                Math.min(MAX_VIEW_WIDTH, width * WorldView.CELL_SIZE),
+                Math.min(MAX_VIEW_HEIGHT, height * WorldView.CELL_SIZE) + 60);
         stage.setScene(scene);
-        stage.setTitle("Подземная жизнь: " + season + " | Кротов: " + moleCount + " | Водоемов: " + waterCount);
+        stage.setTitle("Подземная жизнь: " + season + " | Кротов: " + moleCount + " | Водоемов: " + waterCount
+                + " | Seed: " + world.getSeed());
         stage.show();
 
         // Запуск таймера симуляции
@@ -174,14 +185,20 @@ public class Main extends Application {
 
                 if (!isPaused) {
                     double deltaTime = (now - lastTime) / 1_000_000_000.0;
-                    world.update(deltaTime * speedMultiplier);
+                    scheduler.advance(deltaTime, speedMultiplier);
                 }
+                view.render(scheduler.getAlpha());
                 lastTime = now;
             }
         };
         timer.start();
     }
 
+    private int namedInt(String name, int defaultValue) {
+        String value = getParameters().getNamed().get(name);
+        return value != null ? Integer.parseInt(value) : defaultValue;
+    }
+
     public static void main(String[] args) {
         launch(args);
     }
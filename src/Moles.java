@@ -0,0 +1,311 @@
+import java.io.IOException;
+import java.util.Arrays;
+
+public class Moles extends Animals {
+
+    private static final int REPRODUCTION_TIME = 600;
+    private static final double REPRODUCTION_PROBABILITY = 0.04;
+    private static final int MAX_HUNGER = 1500;
+    private static final int HUNGER_PER_FRAME = 1;
+    public static final int TUNNEL_DURATION = 1000;
+    private static final double MOVE_DELAY = 0.05;
+    private static final double MOVE_STEP = World.TICK_DURATION / MOVE_DELAY;
+    // Куда свернуть, если цель оказалась в воде
+    private static final int[][] AROUND_WATER = {{1, 0}, {-1, 0}, {0, 1}, {0, -1}};
+
+    // Направление по X: -1, 0 или 1; по Y — в пределах [-0.5, 0.5]
+    private byte[] preferredDirectionX = new byte[capacity];
+    private float[] preferredDirectionY = new float[capacity];
+
+    private int[] targetX = new int[capacity];
+    private int[] targetY = new int[capacity];
+    private double[] progress = new double[capacity];
+    // Положение для отрисовки на конец прошлого тика, между тиками вид интерполирует
+    private float[] prevRenderX = new float[capacity];
+    private float[] prevRenderY = new float[capacity];
+
+    public Moles(Grid grid) {
+        super(grid);
+    }
+
+    // Новый крот; туннель в его клетке отмечает World
+    int spawn(int startX, int startY, long seed) {
+        int slot = add(startX, startY, seed);
+        targetX[slot] = startX;
+        targetY[slot] = startY;
+        progress[slot] = 0;
+
+        preferredDirectionX[slot] = (byte) (Rng.nextBoolean(rng, slot) ? 1 : -1);
+        preferredDirectionY[slot] = 0;
+        prevRenderX[slot] = startX;
+        prevRenderY[slot] = startY;
+        return slot;
+    }
+
+    // Голод, выбор цели, шаг, газ и бросок на размножение — без записи в мир
+    @Override
+    public void plan(World world, int i) {
+        intent[i] = 0;
+        if (!alive[i]) return;
+
+        prevRenderX[i] = (float) getRenderX(i);
+        prevRenderY[i] = (float) getRenderY(i);
+
+        addHunger(i, HUNGER_PER_FRAME);
+        if (hunger[i] >= MAX_HUNGER) {
+            intent[i] = INTENT_STARVE;
+            return;
+        }
+
+        determineDirection(world, i);
+        planPosition(i);
+
+        if (world.isGasChamber(planX[i], planY[i])) {
+            intent[i] |= INTENT_GAS;
+            return;
+        }
+
+        countReproduction(i);
+        if (reproductionCounter[i] >= REPRODUCTION_TIME && Rng.nextDouble(rng, i) < REPRODUCTION_PROBABILITY) {
+            reproductionCounter[i] = 0;
+            // Зимой шанс размножения значительно ниже
+            if (world.getSeason() != Season.WINTER || Rng.nextDouble(rng, i) <= 0.2) {
+                intent[i] |= INTENT_REPRODUCE;
+            }
+        }
+    }
+
+    @Override
+    public void commit(World world, int i) {
+        if (!alive[i]) return;
+        if ((intent[i] & INTENT_STARVE) != 0) {
+            world.killMole(i);
+            return;
+        }
+
+        if ((intent[i] & INTENT_MOVE) != 0) {
+            markTunnelPath(world, x[i], y[i], planX[i], planY[i]);
+        }
+        moveTo(i, planX[i], planY[i]);
+
+        if ((intent[i] & INTENT_GAS) != 0) {
+            world.killMole(i);
+            return;
+        }
+
+        if ((intent[i] & INTENT_REPRODUCE) != 0) {
+            reproduce(world, i);
+        }
+
+        checkForFood(world, i); // Используем общий метод из Animals
+    }
+
+    // Соседняя клетка без крота проверяется уже при коммите, по порядку слотов
+    private void reproduce(World world, int i) {
+        for (int[] dir : DIRECTIONS) {
+            int newX = x[i] + dir[0];
+            int newY = y[i] + dir[1];
+            if (world.isValidPosition(newX, newY)
+                    && !world.isWater(newX, newY)
+                    && !world.hasMoleAt(newX, newY)) {
+                world.addMole(newX, newY, Rng.split(rng, i));
+                break;
+            }
+        }
+    }
+
+    private void determineDirection(World world, int i) {
+        if (progress[i] >= 1.0) {
+            int x = this.x[i], y = this.y[i];
+            int newTargetX = x, newTargetY = y;
+
+            if (Rng.nextDouble(rng, i) < 0.7) {
+                newTargetX += preferredDirectionX[i];
+            } else {
+                newTargetY += (int)Math.signum(preferredDirectionY[i]);
+            }
+
+            newTargetX = Math.max(0, Math.min(world.width - 1, newTargetX));
+            newTargetY = Math.max(0, Math.min(world.height - 1, newTargetY));
+
+            if (Rng.nextDouble(rng, i) < 0.1) {
+                preferredDirectionX[i] *= (Rng.nextDouble(rng, i) < 0.8) ? 1 : -1;
+                preferredDirectionY[i] = (float) Math.max(-0.5, Math.min(0.5,
+                        preferredDirectionY[i] + (Rng.nextDouble(rng, i) - 0.5) * 0.3));
+            }
+
+            if (world.hasTunnelAt(newTargetX, newTargetY) && Rng.nextDouble(rng, i) < 0.8) {
+                preferredDirectionX[i] *= -1;
+                newTargetX = x + preferredDirectionX[i];
+                newTargetX = Math.max(0, Math.min(world.width - 1, newTargetX));
+            }
+
+            if (world.getWaterInfluence(x, y) > 0.5 && Rng.nextDouble(rng, i) < 0.6) {
+                adjustDirectionToWater(world, i);
+                newTargetX = x + preferredDirectionX[i];
+                newTargetY = y + (int)Math.signum(preferredDirectionY[i]);
+
+                newTargetX = Math.max(0, Math.min(world.width - 1, newTargetX));
+                newTargetY = Math.max(0, Math.min(world.height - 1, newTargetY));
+            }
+
+            if (!world.isWater(newTargetX, newTargetY)) {
+                if (world.getSeason() == Season.WINTER && newTargetY < World.FROZEN_TOP_LAYERS) return;
+                targetX[i] = newTargetX;
+                targetY[i] = newTargetY;
+            } else {
+                for (int[] dir : AROUND_WATER) {
+                    int tx = x + dir[0];
+                    int ty = y + dir[1];
+                    if (world.isValidPosition(tx, ty) && !world.isWater(tx, ty)) {
+                        targetX[i] = tx;
+                        targetY[i] = ty;
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    // Клетка, в которой крот окажется после шага; INTENT_MOVE — если по пути роет туннель
+    private void planPosition(int i) {
+        if (progress[i] < 1.0) {
+            progress[i] = Math.min(1.0, progress[i] + MOVE_STEP);
+            double newX = x[i] + (targetX[i] - x[i]) * progress[i];
+            double newY = y[i] + (targetY[i] - y[i]) * progress[i];
+            planX[i] = (int) newX;
+            planY[i] = (int) newY;
+            intent[i] |= INTENT_MOVE;
+        } else {
+            progress[i] = 0;
+            planX[i] = targetX[i];
+            planY[i] = targetY[i];
+        }
+    }
+
+    private void markTunnelPath(World world, int fromX, int fromY, int toX, int toY) {
+        int dx = Math.abs(toX - fromX);
+        int dy = -Math.abs(toY - fromY);
+        int sx = fromX < toX ? 1 : -1;
+        int sy = fromY < toY ? 1 : -1;
+        int err = dx + dy;
+
+        while (true) {
+            world.markTunnelCell(fromX, fromY);
+            if (fromX == toX && fromY == toY) break;
+            int e2 = 2 * err;
+            if (e2 >= dy) {
+                err += dy;
+                fromX += sx;
+            }
+            if (e2 <= dx) {
+                err += dx;
+                fromY += sy;
+            }
+        }
+    }
+
+
+    // Крот переходит в следующую клетку при любом намерении, кроме голодной смерти
+    @Override
+    protected boolean movesOnCommit(int i) {
+        return alive[i] && (intent[i] & INTENT_STARVE) == 0;
+    }
+
+    // По пути крот роет туннель от своей клетки до соседней
+    @Override
+    void prepareCommit(int i) {
+        super.prepareCommit(i);
+        if (movesOnCommit(i) && (intent[i] & INTENT_MOVE) != 0) {
+            grid.prepareTunnels(grid.index(x[i], y[i]));
+            grid.prepareTunnels(grid.index(planX[i], planY[i]));
+        }
+    }
+
+    @Override
+    protected boolean canEatWorms() {
+        return true; // Кроты могут есть червей
+    }
+
+    // Положение для отрисовки: крот плавно переползает к целевой клетке
+    public double getRenderX(int i) {
+        return x[i] + (targetX[i] - x[i]) * progress[i];
+    }
+
+    public double getRenderY(int i) {
+        return y[i] + (targetY[i] - y[i]) * progress[i];
+    }
+
+    // alpha — доля времени, прошедшая от последнего тика до следующего
+    public double getRenderX(int i, double alpha) {
+        return prevRenderX[i] + (getRenderX(i) - prevRenderX[i]) * alpha;
+    }
+
+    public double getRenderY(int i, double alpha) {
+        return prevRenderY[i] + (getRenderY(i) - prevRenderY[i]) * alpha;
+    }
+
+    private void adjustDirectionToWater(World world, int i) {
+        // Ближайшая вода в окне 21×21 уже посчитана миром для каждой клетки
+        int bestDx = world.getNearestWaterDx(x[i], y[i]);
+        if (bestDx == World.NO_NEAREST_WATER) return;
+        int bestDy = world.getNearestWaterDy(x[i], y[i]);
+
+        preferredDirectionX[i] = (byte) Integer.signum(bestDx);
+        preferredDirectionY[i] = Integer.signum(bestDy) * 0.3f;
+    }
+
+    @Override
+    void write(SnapshotWriter out) throws IOException {
+        super.write(out);
+        out.putBytes(preferredDirectionX, count);
+        out.putFloats(preferredDirectionY, count);
+        out.putInts(targetX, count);
+        out.putInts(targetY, count);
+        out.putDoubles(progress, count);
+        out.putFloats(prevRenderX, count);
+        out.putFloats(prevRenderY, count);
+    }
+
+    @Override
+    void read(SnapshotReader in) throws IOException {
+        super.read(in);
+        in.getBytes(preferredDirectionX, count);
+        in.getFloats(preferredDirectionY, count);
+        in.getInts(targetX, count);
+        in.getInts(targetY, count);
+        in.getDoubles(progress, count);
+        in.getFloats(prevRenderX, count);
+        in.getFloats(prevRenderY, count);
+        // Из цели и доли пути тик считает следующую клетку: обе должны оставлять крота на поле
+        for (int i = 0; i < count; i++) {
+            if (!grid.contains(targetX[i], targetY[i]) || !(progress[i] >= 0 && progress[i] <= 1)) {
+                throw new IOException("Неверная цель крота в снимке у слота " + i);
+            }
+        }
+    }
+
+    @Override
+    protected void moveSlot(int from, int to) {
+        super.moveSlot(from, to);
+        preferredDirectionX[to] = preferredDirectionX[from];
+        preferredDirectionY[to] = preferredDirectionY[from];
+        targetX[to] = targetX[from];
+        targetY[to] = targetY[from];
+        progress[to] = progress[from];
+        prevRenderX[to] = prevRenderX[from];
+        prevRenderY[to] = prevRenderY[from];
+    }
+
+    @Override
+    protected void grow(int newCapacity) {
+        super.grow(newCapacity);
+        preferredDirectionX = Arrays.copyOf(preferredDirectionX, newCapacity);
+        preferredDirectionY = Arrays.copyOf(preferredDirectionY, newCapacity);
+        targetX = Arrays.copyOf(targetX, newCapacity);
+        targetY = Arrays.copyOf(targetY, newCapacity);
+        progress = Arrays.copyOf(progress, newCapacity);
+        prevRenderX = Arrays.copyOf(prevRenderX, newCapacity);
+        prevRenderY = Arrays.copyOf(prevRenderY, newCapacity);
+    }
+}
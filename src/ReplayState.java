@@ -0,0 +1,251 @@
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+// Видимое состояние мира на тик, восстановленное из журнала (см. JournalReplay):
+// где кроты и черви, грибы, корни и туннели со сроками. Правил в нём нет — голод,
+// потоки случайных чисел и прочее для продолжения прогона остаются в опорных кадрах.
+// Кроты и черви хранятся по id, клетки — ключом y * width + x
+public final class ReplayState {
+    public final int width;
+    public final int height;
+    private long tick;
+
+    private boolean[] moleAlive = new boolean[64];
+    private int[] moleX = new int[64];
+    private int[] moleY = new int[64];
+    private float[] moleRenderX = new float[64];
+    private float[] moleRenderY = new float[64];
+    private int moleCount = 0;
+
+    private boolean[] wormAlive = new boolean[64];
+    private int[] wormX = new int[64];
+    private int[] wormY = new int[64];
+    private int wormCount = 0;
+
+    // В клетке может оказаться больше одного гриба, поэтому счётчик
+    private final Map<Long, Integer> mushrooms = new HashMap<>();
+    private final Set<Long> roots = new HashSet<>();
+    // Клетка туннеля -> момент осыпания по часам туннелей (они совпадают с номером тика)
+    private final Map<Long, Long> tunnelExpiry = new HashMap<>();
+
+    ReplayState(int width, int height) {
+        this.width = width;
+        this.height = height;
+    }
+
+    // Видимое состояние живого мира
+    static ReplayState of(World world) {
+        ReplayState state = new ReplayState(world.width, world.height);
+        state.tick = world.getTick();
+
+        Moles moles = world.getMoles();
+        for (int i = 0; i < moles.size(); i++) {
+            if (!moles.isAlive(i)) continue;
+            state.addMole(moles.getId(i), moles.getX(i), moles.getY(i),
+                    (float) moles.getRenderX(i), (float) moles.getRenderY(i));
+        }
+        Worms worms = world.getWorms();
+        for (int i = 0; i < worms.size(); i++) {
+            if (worms.isAlive(i)) state.addWorm(worms.getId(i), worms.getX(i), worms.getY(i));
+        }
+        for (Mushroom m : world.getMushrooms()) {
+            state.addMushroom(m.getX(), m.getY());
+        }
+        world.forEachCellWith(Grid.ROOT, state.roots::add);
+        long clock = world.getTick();
+        world.forEachCellWith(Grid.TUNNEL, cell -> state.tunnelExpiry.put(cell,
+                clock + world.getTunnelRemaining((int) (cell % world.width), (int) (cell / world.width))));
+        return state;
+    }
+
+    public long getTick() {
+        return tick;
+    }
+
+    // id кротов лежат в [0, getMoleIdLimit())
+    public int getMoleIdLimit() {
+        return moleAlive.length;
+    }
+
+    public int getMoleCount() {
+        return moleCount;
+    }
+
+    public boolean isMoleAlive(int id) {
+        return id < moleAlive.length && moleAlive[id];
+    }
+
+    public int getMoleX(int id) {
+        return moleX[id];
+    }
+
+    public int getMoleY(int id) {
+        return moleY[id];
+    }
+
+    public double getMoleRenderX(int id) {
+        return moleRenderX[id];
+    }
+
+    public double getMoleRenderY(int id) {
+        return moleRenderY[id];
+    }
+
+    public int getWormIdLimit() {
+        return wormAlive.length;
+    }
+
+    public int getWormCount() {
+        return wormCount;
+    }
+
+    public boolean isWormAlive(int id) {
+        return id < wormAlive.length && wormAlive[id];
+    }
+
+    public int getWormX(int id) {
+        return wormX[id];
+    }
+
+    public int getWormY(int id) {
+        return wormY[id];
+    }
+
+    public int getMushroomCount() {
+        int total = 0;
+        for (int n : mushrooms.values()) total += n;
+        return total;
+    }
+
+    public boolean hasMushroomAt(int x, int y) {
+        return mushrooms.containsKey(key(x, y));
+    }
+
+    public boolean hasRootAt(int x, int y) {
+        return roots.contains(key(x, y));
+    }
+
+    public int getRootCount() {
+        return roots.size();
+    }
+
+    public boolean hasTunnelAt(int x, int y) {
+        return tunnelExpiry.containsKey(key(x, y));
+    }
+
+    public int getTunnelCount() {
+        return tunnelExpiry.size();
+    }
+
+    // Как World.getTunnelRemaining
+    public int getTunnelRemaining(int x, int y) {
+        Long expiry = tunnelExpiry.get(key(x, y));
+        return expiry != null ? (int) (expiry - tick) : 0;
+    }
+
+    // Совпадает ли видимое состояние с другим — для проверки журнала
+    boolean sameAs(ReplayState other) {
+        if (tick != other.tick || moleCount != other.moleCount || wormCount != other.wormCount) return false;
+        for (int id = 0; id < Math.max(moleAlive.length, other.moleAlive.length); id++) {
+            boolean alive = isMoleAlive(id);
+            if (alive != other.isMoleAlive(id)) return false;
+            if (alive && (moleX[id] != other.moleX[id] || moleY[id] != other.moleY[id]
+                    || moleRenderX[id] != other.moleRenderX[id] || moleRenderY[id] != other.moleRenderY[id])) {
+                return false;
+            }
+        }
+        for (int id = 0; id < Math.max(wormAlive.length, other.wormAlive.length); id++) {
+            boolean alive = isWormAlive(id);
+            if (alive != other.isWormAlive(id)) return false;
+            if (alive && (wormX[id] != other.wormX[id] || wormY[id] != other.wormY[id])) return false;
+        }
+        return mushrooms.equals(other.mushrooms) && roots.equals(other.roots)
+                && tunnelExpiry.equals(other.tunnelExpiry);
+    }
+
+    // Изменения из журнала (см. EventJournal)
+
+    void endTick(long tick) {
+        this.tick = tick;
+    }
+
+    void addMole(int id, int x, int y, float renderX, float renderY) {
+        if (id >= moleAlive.length) {
+            int size = Math.max(id + 1, moleAlive.length * 2);
+            moleAlive = Arrays.copyOf(moleAlive, size);
+            moleX = Arrays.copyOf(moleX, size);
+            moleY = Arrays.copyOf(moleY, size);
+            moleRenderX = Arrays.copyOf(moleRenderX, size);
+            moleRenderY = Arrays.copyOf(moleRenderY, size);
+        }
+        if (!moleAlive[id]) moleCount++;
+        moleAlive[id] = true;
+        moveMole(id, x, y, renderX, renderY);
+    }
+
+    void moveMole(int id, int x, int y, float renderX, float renderY) {
+        moleX[id] = x;
+        moleY[id] = y;
+        moleRenderX[id] = renderX;
+        moleRenderY[id] = renderY;
+    }
+
+    void removeMole(int id) {
+        if (moleAlive[id]) moleCount--;
+        moleAlive[id] = false;
+    }
+
+    void addWorm(int id, int x, int y) {
+        if (id >= wormAlive.length) {
+            int size = Math.max(id + 1, wormAlive.length * 2);
+            wormAlive = Arrays.copyOf(wormAlive, size);
+            wormX = Arrays.copyOf(wormX, size);
+            wormY = Arrays.copyOf(wormY, size);
+        }
+        if (!wormAlive[id]) wormCount++;
+        wormAlive[id] = true;
+        moveWorm(id, x, y);
+    }
+
+    void moveWorm(int id, int x, int y) {
+        wormX[id] = x;
+        wormY[id] = y;
+    }
+
+    void removeWorm(int id) {
+        if (wormAlive[id]) wormCount--;
+        wormAlive[id] = false;
+    }
+
+    void addMushroom(int x, int y) {
+        mushrooms.merge(key(x, y), 1, Integer::sum);
+    }
+
+    void removeMushroom(int x, int y) {
+        mushrooms.computeIfPresent(key(x, y), (k, n) -> n > 1 ? n - 1 : null);
+    }
+
+    void addRoot(int x, int y) {
+        roots.add(key(x, y));
+    }
+
+    void removeRoot(int x, int y) {
+        roots.remove(key(x, y));
+    }
+
+    // Копают в тике tick + 1, пока часы туннелей ещё показывают tick
+    void digTunnel(int x, int y) {
+        tunnelExpiry.put(key(x, y), tick + Moles.TUNNEL_DURATION);
+    }
+
+    void fadeTunnel(int x, int y) {
+        tunnelExpiry.remove(key(x, y));
+    }
+
+    private long key(int x, int y) {
+        return (long) y * width + x;
+    }
+}
@@ -0,0 +1,49 @@
+// Генератор SplitMix64 без объектов: состояние потока — один long в столбце популяции.
+// Тот же алгоритм, что и у java.util.SplittableRandom, но без отдельного объекта на особь
+final class Rng {
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+    private static final double DOUBLE_UNIT = 0x1.0p-53;
+
+    private Rng() {
+    }
+
+    static long nextLong(long[] state, int i) {
+        return mix64(state[i] += GOLDEN_GAMMA);
+    }
+
+    // Равномерно в [0, 1)
+    static double nextDouble(long[] state, int i) {
+        return (nextLong(state, i) >>> 11) * DOUBLE_UNIT;
+    }
+
+    // Равномерно в [0, bound)
+    static int nextInt(long[] state, int i, int bound) {
+        return (int) (((nextLong(state, i) >>> 32) * bound) >>> 32);
+    }
+
+    static boolean nextBoolean(long[] state, int i) {
+        return nextLong(state, i) < 0;
+    }
+
+    // Seed для независимого потока потомка; сдвигает поток родителя
+    static long split(long[] state, int i) {
+        return mixSeed(nextLong(state, i));
+    }
+
+    // Seed независимого потока для ключа key (номер чанка и т. п.) из общего seed
+    static long mix(long seed, long key) {
+        return mixSeed(seed + key * GOLDEN_GAMMA);
+    }
+
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    private static long mixSeed(long z) {
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return z ^ (z >>> 33);
+    }
+}
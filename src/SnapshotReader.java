@@ -0,0 +1,175 @@
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+// Чтение снимка, отображённого в память. Файл отображается окнами по WINDOW байт:
+// одно отображение ограничено 2 ГБ, а снимок огромного мира бывает больше
+final class SnapshotReader {
+    private static final int WINDOW = 64 << 20;
+
+    private final FileChannel channel;
+    private final long size;
+    private MappedByteBuffer buffer;
+    private long position = 0;
+
+    SnapshotReader(FileChannel channel) throws IOException {
+        this.channel = channel;
+        this.size = channel.size();
+    }
+
+    byte getByte() throws IOException {
+        ensure(1);
+        position += 1;
+        return buffer.get();
+    }
+
+    short getShort() throws IOException {
+        ensure(2);
+        position += 2;
+        return buffer.getShort();
+    }
+
+    int getInt() throws IOException {
+        ensure(4);
+        position += 4;
+        return buffer.getInt();
+    }
+
+    long getLong() throws IOException {
+        ensure(8);
+        position += 8;
+        return buffer.getLong();
+    }
+
+    // Длина столбцов, записанная в снимке. Отрицательная или не влезающая в остаток файла
+    // длина — признак повреждённого снимка: массив под неё заводить нельзя
+    int getCount(int bytesEach) throws IOException {
+        int n = getInt();
+        if (n < 0 || (long) n * bytesEach > remaining()) {
+            throw new IOException("Неверная длина в снимке на байте " + (position - 4) + ": " + n);
+        }
+        return n;
+    }
+
+    void getBytes(byte[] a, int n) throws IOException {
+        int off = 0;
+        while (off < n) {
+            int k = room(n - off, 1);
+            buffer.get(a, off, k);
+            off += k;
+            position += k;
+        }
+    }
+
+    void getBooleans(boolean[] a, int n) throws IOException {
+        for (int i = 0; i < n; i++) a[i] = getByte() != 0;
+    }
+
+    void getShorts(short[] a, int n) throws IOException {
+        int off = 0;
+        while (off < n) {
+            int k = room(n - off, 2);
+            buffer.asShortBuffer().get(a, off, k);
+            advance(k * 2);
+            off += k;
+        }
+    }
+
+    void getChars(char[] a, int n) throws IOException {
+        int off = 0;
+        while (off < n) {
+            int k = room(n - off, 2);
+            buffer.asCharBuffer().get(a, off, k);
+            advance(k * 2);
+            off += k;
+        }
+    }
+
+    void getInts(int[] a, int n) throws IOException {
+        int off = 0;
+        while (off < n) {
+            int k = room(n - off, 4);
+            buffer.asIntBuffer().get(a, off, k);
+            advance(k * 4);
+            off += k;
+        }
+    }
+
+    void getLongs(long[] a, int n) throws IOException {
+        int off = 0;
+        while (off < n) {
+            int k = room(n - off, 8);
+            buffer.asLongBuffer().get(a, off, k);
+            advance(k * 8);
+            off += k;
+        }
+    }
+
+    void getFloats(float[] a, int n) throws IOException {
+        int off = 0;
+        while (off < n) {
+            int k = room(n - off, 4);
+            buffer.asFloatBuffer().get(a, off, k);
+            advance(k * 4);
+            off += k;
+        }
+    }
+
+    void getDoubles(double[] a, int n) throws IOException {
+        int off = 0;
+        while (off < n) {
+            int k = room(n - off, 8);
+            buffer.asDoubleBuffer().get(a, off, k);
+            advance(k * 8);
+            off += k;
+        }
+    }
+
+    long position() {
+        return position;
+    }
+
+    // Следующее чтение начнётся с байта position; окно отобразится заново
+    void seek(long position) {
+        this.position = position;
+        this.buffer = null;
+    }
+
+    long remaining() {
+        return size - position;
+    }
+
+    void skip(int bytes) throws IOException {
+        if (buffer != null && buffer.remaining() >= bytes) {
+            advance(bytes);
+        } else {
+            seek(position + bytes);
+        }
+    }
+
+    boolean atEnd() {
+        return position == size;
+    }
+
+    private void advance(int bytes) {
+        buffer.position(buffer.position() + bytes);
+        position += bytes;
+    }
+
+    private int room(int wanted, int elementSize) throws IOException {
+        ensure(elementSize);
+        return Math.min(wanted, buffer.remaining() / elementSize);
+    }
+
+    private void ensure(int bytes) throws IOException {
+        if (buffer == null || buffer.remaining() < bytes) {
+            long length = Math.min(WINDOW, size - position);
+            if (length < bytes) {
+                throw new IOException("Снимок обрывается на байте " + position);
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+// Запись снимка в FileChannel через прямой буфер: столбцы копируются в него целыми
+// кусками, полный буфер уходит в канал одним вызовом. Размер снимка заранее не нужен
+final class SnapshotWriter {
+    private static final int BUFFER_SIZE = 4 << 20;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    private long position = 0;
+
+    SnapshotWriter(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    long position() {
+        return position;
+    }
+
+    void putByte(int v) throws IOException {
+        ensure(1);
+        buffer.put((byte) v);
+        position += 1;
+    }
+
+    void putShort(int v) throws IOException {
+        ensure(2);
+        buffer.putShort((short) v);
+        position += 2;
+    }
+
+    void putInt(int v) throws IOException {
+        ensure(4);
+        buffer.putInt(v);
+        position += 4;
+    }
+
+    void putLong(long v) throws IOException {
+        ensure(8);
+        buffer.putLong(v);
+        position += 8;
+    }
+
+    void putBytes(byte[] a, int n) throws IOException {
+        int off = 0;
+        while (off < n) {
+            int k = room(n - off, 1);
+            buffer.put(a, off, k);
+            off += k;
+            position += k;
+        }
+    }
+
+    void putBooleans(boolean[] a, int n) throws IOException {
+        for (int i = 0; i < n; i++) putByte(a[i] ? 1 : 0);
+    }
+
+    void putShorts(short[] a, int n) throws IOException {
+        int off = 0;
+        while (off < n) {
+            int k = room(n - off, 2);
+            advance(buffer.asShortBuffer().put(a, off, k).position() * 2);
+            off += k;
+            position += k * 2L;
+        }
+    }
+
+    void putChars(char[] a, int n) throws IOException {
+        int off = 0;
+        while (off < n) {
+            int k = room(n - off, 2);
+            advance(buffer.asCharBuffer().put(a, off, k).position() * 2);
+            off += k;
+            position += k * 2L;
+        }
+    }
+
+    void putInts(int[] a, int n) throws IOException {
+        int off = 0;
+        while (off < n) {
+            int k = room(n - off, 4);
+            advance(buffer.asIntBuffer().put(a, off, k).position() * 4);
+            off += k;
+            position += k * 4L;
+        }
+    }
+
+    void putLongs(long[] a, int n) throws IOException {
+        int off = 0;
+        while (off < n) {
+            int k = room(n - off, 8);
+            advance(buffer.asLongBuffer().put(a, off, k).position() * 8);
+            off += k;
+            position += k * 8L;
+        }
+    }
+
+    void putFloats(float[] a, int n) throws IOException {
+        int off = 0;
+        while (off < n) {
+            int k = room(n - off, 4);
+            advance(buffer.asFloatBuffer().put(a, off, k).position() * 4);
+            off += k;
+            position += k * 4L;
+        }
+    }
+
+    void putDoubles(double[] a, int n) throws IOException {
+        int off = 0;
+        while (off < n) {
+            int k = room(n - off, 8);
+            advance(buffer.asDoubleBuffer().put(a, off, k).position() * 8);
+            off += k;
+            position += k * 8L;
+        }
+    }
+
+    // Видовые буферы пишут мимо позиции основного, её сдвигаем вручную
+    private void advance(int bytes) {
+        buffer.position(buffer.position() + bytes);
+    }
+
+    // Сколько элементов по elementSize байт из wanted влезает в буфер
+    private int room(int wanted, int elementSize) throws IOException {
+        ensure(elementSize);
+        return Math.min(wanted, buffer.remaining() / elementSize);
+    }
+
+    private void ensure(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) flush();
+    }
+
+    // Дописывает накопленное в канал; вызывается и в конце записи
+    void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,31 @@
+import javafx.scene.image.Image;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.Map;
+
+// Картинки из ресурсов, декодированные один раз и сразу уменьшенные до размера,
+// в котором их рисуют. Все экземпляры получают один и тот же Image
+final class SpriteCache {
+    private static final Map<String, Image> sprites = new HashMap<>();
+
+    private SpriteCache() {
+    }
+
+    // name — имя файла в корне classpath, size — сторона квадрата в пикселях
+    static Image get(String name, int size) {
+        return sprites.computeIfAbsent(name + "@" + size, key -> load(name, size));
+    }
+
+    private static Image load(String name, int size) {
+        try (InputStream in = SpriteCache.class.getResourceAsStream("/" + name)) {
+            if (in == null) {
+                throw new IllegalArgumentException("Нет ресурса " + name);
+            }
+            return new Image(in, size, size, true, true);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
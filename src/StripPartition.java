@@ -0,0 +1,168 @@
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// Делит работу тика на горизонтальные полосы поля и раздаёт их ForkJoinPool.
+// Параллельно выполняются только независимые части: планы особей и коммиты, не выходящие
+// из своей полосы, — поэтому результат не зависит ни от числа потоков, ни от порядка
+// выполнения полос
+final class StripPartition {
+    static final int STRIP_HEIGHT = 16;
+
+    // Меньше этого параллелить невыгодно: накладные расходы съедают выигрыш
+    static final int MIN_PARALLEL_SLOTS = 4096;
+
+    // Отметка в effectEnd: слот пограничный и коммитится последовательно
+    private static final int BOUNDARY = -1;
+
+    private final int height;
+    private final int stripCount;
+    private final int[] stripStart;
+    private final int[] fill;
+    // Параллельный коммит: для внутреннего слота — где в журнале его полосы кончаются
+    // его последствия (World.stripEffectCount), для пограничного — BOUNDARY.
+    // Заводится с первым параллельным коммитом
+    private int[] effectEnd = new int[0];
+    private final int[] effectStart;
+
+    StripPartition(int height) {
+        this.height = height;
+        this.stripCount = (height + STRIP_HEIGHT - 1) / STRIP_HEIGHT;
+        this.stripStart = new int[stripCount + 1];
+        this.fill = new int[stripCount + 1];
+        this.effectStart = new int[stripCount];
+    }
+
+    int stripCount() {
+        return stripCount;
+    }
+
+    // Считает планы слотов [0, count) популяции, полоса за полосой.
+    // Последовательный путь ничего не выделяет; параллельный создаёт задачи пула
+    void planAll(ForkJoinPool pool, Animals animals, int count, World world) {
+        if (pool == null || count < MIN_PARALLEL_SLOTS) {
+            for (int i = 0; i < count; i++) animals.plan(world, i);
+            return;
+        }
+
+        sortByStrip(animals, count, false);
+        pool.invoke(new StripTask(0, stripCount, animals, world, false));
+    }
+
+    // Применяет намерения слотов [0, count): сначала внутренние по порядку слотов, затем
+    // пограничные — тоже по порядку слотов. Внутренний слот (Animals.commitsWithin) трогает
+    // только строки своей полосы, и внутренние слоты разных полос друг другу не мешают.
+    // С пулом полосы коммитят их одновременно, а общие для мира последствия World копит
+    // в журналах полос и применяет здесь в том же порядке слотов — результат тот же, что
+    // и без пула. Пограничные слоты задевают соседнюю полосу или рождают особей
+    void commitAll(ForkJoinPool pool, Animals animals, int count, World world) {
+        // Рождение в пограничном слоте может расширить столбцы и заменить stripOrder —
+        // обходится массив, взятый до коммита
+        int[] order = animals.stripOrder;
+        int boundaryCount = 0;
+
+        if (pool == null || count < MIN_PARALLEL_SLOTS) {
+            for (int i = 0; i < count; i++) {
+                if (isInterior(animals, i)) {
+                    animals.commit(world, i);
+                } else {
+                    order[boundaryCount++] = i;
+                }
+            }
+        } else {
+            if (effectEnd.length < count) {
+                effectEnd = new int[Math.max(count, effectEnd.length * 2)];
+            }
+            for (int i = 0; i < count; i++) {
+                if (isInterior(animals, i)) {
+                    effectEnd[i] = 0;
+                    animals.prepareCommit(i);
+                } else {
+                    effectEnd[i] = BOUNDARY;
+                }
+            }
+            sortByStrip(animals, count, true);
+            world.deferStripEffects();
+            pool.invoke(new StripTask(0, stripCount, animals, world, true));
+            world.endStripEffects();
+
+            // Внутренний слот и после коммита стоит в своей полосе
+            Arrays.fill(effectStart, 0);
+            for (int i = 0; i < count; i++) {
+                if (effectEnd[i] == BOUNDARY) {
+                    order[boundaryCount++] = i;
+                    continue;
+                }
+                int strip = animals.getY(i) / STRIP_HEIGHT;
+                world.applyStripEffects(strip, effectStart[strip], effectEnd[i]);
+                effectStart[strip] = effectEnd[i];
+            }
+        }
+
+        for (int k = 0; k < boundaryCount; k++) {
+            animals.commit(world, order[k]);
+        }
+    }
+
+    private boolean isInterior(Animals animals, int slot) {
+        int top = animals.getY(slot) / STRIP_HEIGHT * STRIP_HEIGHT;
+        return animals.commitsWithin(slot, top, Math.min(height, top + STRIP_HEIGHT));
+    }
+
+    // Сортировка подсчётом: слоты каждой полосы лежат в stripOrder подряд, по порядку слотов.
+    // interiorOnly — только внутренние слоты коммита, пограничные пропускаются
+    private void sortByStrip(Animals animals, int count, boolean interiorOnly) {
+        int[] order = animals.stripOrder;
+        Arrays.fill(stripStart, 0);
+        for (int i = 0; i < count; i++) {
+            if (interiorOnly && effectEnd[i] == BOUNDARY) continue;
+            stripStart[animals.getY(i) / STRIP_HEIGHT + 1]++;
+        }
+        for (int s = 0; s < stripCount; s++) {
+            stripStart[s + 1] += stripStart[s];
+        }
+        System.arraycopy(stripStart, 0, fill, 0, fill.length);
+        for (int i = 0; i < count; i++) {
+            if (interiorOnly && effectEnd[i] == BOUNDARY) continue;
+            order[fill[animals.getY(i) / STRIP_HEIGHT]++] = i;
+        }
+    }
+
+    // Задачи пула не сериализуются
+    @SuppressWarnings("serial")
+    private final class StripTask extends RecursiveAction {
+        private final int fromStrip, toStrip;
+        private final Animals animals;
+        private final World world;
+        // Коммит внутренних слотов полос вместо планов
+        private final boolean commit;
+
+        StripTask(int fromStrip, int toStrip, Animals animals, World world, boolean commit) {
+            this.fromStrip = fromStrip;
+            this.toStrip = toStrip;
+            this.animals = animals;
+            this.world = world;
+            this.commit = commit;
+        }
+
+        @Override
+        protected void compute() {
+            if (toStrip - fromStrip > 1) {
+                int mid = (fromStrip + toStrip) >>> 1;
+                invokeAll(new StripTask(fromStrip, mid, animals, world, commit),
+                        new StripTask(mid, toStrip, animals, world, commit));
+                return;
+            }
+            int[] order = animals.stripOrder;
+            for (int k = stripStart[fromStrip]; k < stripStart[toStrip]; k++) {
+                int slot = order[k];
+                if (commit) {
+                    animals.commit(world, slot);
+                    effectEnd[slot] = world.stripEffectCount(fromStrip);
+                } else {
+                    animals.plan(world, slot);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,253 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Пакетный прогон без окна: перебирает сетку параметров (сезон × кроты × водоёмы ×
+// размер водоёмов × длина прогона × seed), гоняет миры параллельно на всех ядрах и пишет сводку
+// по каждому прогону в CSV и/или JSON.
+//
+// Пример: java SweepRunner --seasons=SPRING,WINTER --moles=10,30,50 --water=5,15
+//         --water-size=3-8 --ticks=1000,5000 --seeds=1..20 --csv=sweep.csv --json=sweep.json
+// Без --csv и --json таблица печатается в stdout
+public class SweepRunner {
+
+    // Параметры одного прогона
+    static final class Run {
+        final Season season;
+        final int moles;
+        final int water;
+        final int minWaterSize;
+        final int maxWaterSize;
+        final long ticks;
+        final long seed;
+
+        Run(Season season, int moles, int water, int minWaterSize, int maxWaterSize, long ticks, long seed) {
+            this.season = season;
+            this.moles = moles;
+            this.water = water;
+            this.minWaterSize = minWaterSize;
+            this.maxWaterSize = maxWaterSize;
+            this.ticks = ticks;
+            this.seed = seed;
+        }
+    }
+
+    // Итог прогона; -1 в тике вымирания — популяция дожила до конца
+    static final class Summary {
+        final Run run;
+        final int finalMoles;
+        final int finalWorms;
+        final int finalMushrooms;
+        final long moleExtinctionTick;
+        final long wormExtinctionTick;
+        final double tunnelCoverage;
+        final double ticksPerSecond;
+
+        Summary(Run run, int finalMoles, int finalWorms, int finalMushrooms,
+                long moleExtinctionTick, long wormExtinctionTick,
+                double tunnelCoverage, double ticksPerSecond) {
+            this.run = run;
+            this.finalMoles = finalMoles;
+            this.finalWorms = finalWorms;
+            this.finalMushrooms = finalMushrooms;
+            this.moleExtinctionTick = moleExtinctionTick;
+            this.wormExtinctionTick = wormExtinctionTick;
+            this.tunnelCoverage = tunnelCoverage;
+            this.ticksPerSecond = ticksPerSecond;
+        }
+    }
+
+    private static final String[] COLUMNS = {
+            "season", "moles", "water", "minWaterSize", "maxWaterSize", "ticks", "seed",
+            "finalMoles", "finalWorms", "finalMushrooms",
+            "moleExtinctionTick", "wormExtinctionTick", "tunnelCoverage", "ticksPerSecond",
+    };
+
+    public static void main(String[] args) throws IOException, InterruptedException, ExecutionException {
+        Map<String, String> options = parseOptions(args);
+        int width = Integer.parseInt(options.getOrDefault("width", "80"));
+        int height = Integer.parseInt(options.getOrDefault("height", "60"));
+        int threads = Integer.parseInt(options.getOrDefault("threads",
+                String.valueOf(Runtime.getRuntime().availableProcessors())));
+
+        List<Run> runs = buildGrid(options);
+        System.err.println("Прогонов: " + runs.size() + ", потоков: " + threads);
+
+        // Параллелим прогоны целиком, а каждый мир считается в своём потоке
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<Summary>> futures = new ArrayList<>();
+        for (Run run : runs) {
+            futures.add(executor.submit(() -> simulate(run, width, height)));
+        }
+        List<Summary> summaries = new ArrayList<>();
+        try {
+            for (Future<Summary> future : futures) {
+                summaries.add(future.get());
+                if (summaries.size() % 10 == 0 || summaries.size() == runs.size()) {
+                    System.err.println("Готово " + summaries.size() + "/" + runs.size());
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        String csv = options.get("csv");
+        String json = options.get("json");
+        if (csv != null) {
+            Files.write(Paths.get(csv), toCsv(summaries).getBytes(StandardCharsets.UTF_8));
+        }
+        if (json != null) {
+            Files.write(Paths.get(json), toJson(summaries).getBytes(StandardCharsets.UTF_8));
+        }
+        if (csv == null && json == null) {
+            System.out.print(toCsv(summaries));
+        }
+    }
+
+    static Summary simulate(Run run, int width, int height) {
+        World world = new World(width, height, run.moles, run.water,
+                run.minWaterSize, run.maxWaterSize, run.season, run.seed);
+        world.setPool(null);
+
+        long moleExtinction = world.getMoles().size() == 0 ? 0 : -1;
+        long wormExtinction = world.getWorms().size() == 0 ? 0 : -1;
+        long start = System.nanoTime();
+        for (long t = 1; t <= run.ticks; t++) {
+            world.tick();
+            if (moleExtinction < 0 && world.getMoles().size() == 0) moleExtinction = t;
+            if (wormExtinction < 0 && world.getWorms().size() == 0) wormExtinction = t;
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        return new Summary(run,
+                world.getMoles().size(),
+                world.getWorms().size(),
+                world.getMushrooms().size(),
+                moleExtinction,
+                wormExtinction,
+                (double) world.getTunnelCount() / ((long) width * height),
+                seconds > 0 ? run.ticks / seconds : 0);
+    }
+
+    // Декартово произведение всех списков параметров
+    static List<Run> buildGrid(Map<String, String> options) {
+        List<Run> runs = new ArrayList<>();
+        for (String season : split(options.getOrDefault("seasons", "SPRING,SUMMER,AUTUMN,WINTER"))) {
+            for (int moles : parseInts(options.getOrDefault("moles", "20"))) {
+                for (int water : parseInts(options.getOrDefault("water", "15"))) {
+                    for (String size : split(options.getOrDefault("water-size", "3-8"))) {
+                        int dash = size.indexOf('-');
+                        if (dash < 0) throw new IllegalArgumentException("Размер водоёма задаётся как мин-макс: " + size);
+                        int minSize = Integer.parseInt(size.substring(0, dash));
+                        int maxSize = Integer.parseInt(size.substring(dash + 1));
+                        for (long ticks : parseLongs(options.getOrDefault("ticks", "3000"))) {
+                            for (long seed : parseLongs(options.getOrDefault("seeds", "1..10"))) {
+                                runs.add(new Run(Season.valueOf(season.toUpperCase(Locale.ROOT)),
+                                        moles, water, minSize, maxSize, ticks, seed));
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return runs;
+    }
+
+    // Список через запятую, элемент — число или диапазон «от..до» включительно
+    private static List<Integer> parseInts(String value) {
+        List<Integer> result = new ArrayList<>();
+        for (long v : parseLongs(value)) result.add(Math.toIntExact(v));
+        return result;
+    }
+
+    // Списки через запятую и диапазоны a..b включительно; seed и число тиков — long
+    private static List<Long> parseLongs(String value) {
+        List<Long> result = new ArrayList<>();
+        for (String part : split(value)) {
+            int range = part.indexOf("..");
+            if (range < 0) {
+                result.add(Long.parseLong(part));
+                continue;
+            }
+            long from = Long.parseLong(part.substring(0, range));
+            long to = Long.parseLong(part.substring(range + 2));
+            // Условие v >= from не даёт зациклиться на переполнении, когда to == Long.MAX_VALUE
+            for (long v = from; v <= to && v >= from; v++) result.add(v);
+        }
+        return result;
+    }
+
+    private static List<String> split(String value) {
+        List<String> parts = new ArrayList<>();
+        for (String part : value.split(",")) {
+            if (!part.trim().isEmpty()) parts.add(part.trim());
+        }
+        return parts;
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0) {
+                throw new IllegalArgumentException("Ожидается --имя=значение: " + arg);
+            }
+            options.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+        return options;
+    }
+
+    private static Object[] values(Summary s) {
+        Run r = s.run;
+        return new Object[]{
+                r.season, r.moles, r.water, r.minWaterSize, r.maxWaterSize, r.ticks, r.seed,
+                s.finalMoles, s.finalWorms, s.finalMushrooms,
+                s.moleExtinctionTick, s.wormExtinctionTick,
+                String.format(Locale.ROOT, "%.6f", s.tunnelCoverage),
+                String.format(Locale.ROOT, "%.1f", s.ticksPerSecond),
+        };
+    }
+
+    static String toCsv(List<Summary> summaries) {
+        StringBuilder sb = new StringBuilder(String.join(",", COLUMNS)).append('\n');
+        for (Summary s : summaries) {
+            Object[] values = values(s);
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) sb.append(',');
+                sb.append(values[i]);
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    // Все значения — числа, кроме сезона
+    static String toJson(List<Summary> summaries) {
+        StringBuilder sb = new StringBuilder("[\n");
+        for (int k = 0; k < summaries.size(); k++) {
+            Object[] values = values(summaries.get(k));
+            sb.append("  {");
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) sb.append(", ");
+                sb.append('"').append(COLUMNS[i]).append("\": ");
+                if (values[i] instanceof Season) {
+                    sb.append('"').append(values[i]).append('"');
+                } else {
+                    sb.append(values[i]);
+                }
+            }
+            sb.append(k + 1 < summaries.size() ? "},\n" : "}\n");
+        }
+        return sb.append("]\n").toString();
+    }
+}
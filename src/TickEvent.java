@@ -0,0 +1,107 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+// Тик мира в JDK Flight Recorder. Включается настройкой записи, например
+//   java -XX:StartFlightRecording=filename=run.jfr,settings=profile ...
+// или jcmd <pid> JFR.start — своё событие пишется в любой записи, пока его не выключили.
+// Смотреть в JDK Mission Control: Event Browser -> Симуляция -> Тик
+@Name("downtown.Tick")
+@Label("Тик")
+@Category("Симуляция")
+@Description("Длительность фаз тика, численность и события популяций")
+@StackTrace(false)
+final class TickEvent extends jdk.jfr.Event {
+    // Пока запись не ведётся, World не создаёт событий вовсе
+    static final EventType TYPE = EventType.getEventType(TickEvent.class);
+
+    @Label("Номер тика")
+    long tick;
+
+    @Label("Кроты: план")
+    @Timespan(Timespan.NANOSECONDS)
+    long molePlan;
+
+    @Label("Кроты: применение")
+    @Timespan(Timespan.NANOSECONDS)
+    long moleCommit;
+
+    @Label("Черви: план")
+    @Timespan(Timespan.NANOSECONDS)
+    long wormPlan;
+
+    @Label("Черви: применение")
+    @Timespan(Timespan.NANOSECONDS)
+    long wormCommit;
+
+    @Label("Туннели")
+    @Timespan(Timespan.NANOSECONDS)
+    long tunnels;
+
+    @Label("Грибы")
+    @Timespan(Timespan.NANOSECONDS)
+    long mushrooms;
+
+    @Label("Корни")
+    @Timespan(Timespan.NANOSECONDS)
+    long roots;
+
+    @Label("Кротов")
+    int moleCount;
+
+    @Label("Червей")
+    int wormCount;
+
+    @Label("Грибов")
+    int mushroomCount;
+
+    @Label("Клеток туннелей")
+    int tunnelCount;
+
+    @Label("Родилось кротов")
+    int moleSpawns;
+
+    @Label("Умерло кротов")
+    int moleDeaths;
+
+    @Label("Родилось червей")
+    int wormSpawns;
+
+    @Label("Умерло червей")
+    int wormDeaths;
+
+    @Label("Выросло грибов")
+    int mushroomSpawns;
+
+    @Label("Убрано грибов")
+    int mushroomDeaths;
+
+    @Label("Запросов к клеткам")
+    int lookups;
+
+    void fill(long tick, TickProfile p, int moles, int worms, int mushrooms, int tunnels) {
+        this.tick = tick;
+        molePlan = p.molePlanNanos;
+        moleCommit = p.moleCommitNanos;
+        wormPlan = p.wormPlanNanos;
+        wormCommit = p.wormCommitNanos;
+        this.tunnels = p.tunnelNanos;
+        this.mushrooms = p.mushroomNanos;
+        roots = p.rootNanos;
+        moleCount = moles;
+        wormCount = worms;
+        mushroomCount = mushrooms;
+        tunnelCount = tunnels;
+        moleSpawns = p.moleSpawns;
+        moleDeaths = p.moleDeaths;
+        wormSpawns = p.wormSpawns;
+        wormDeaths = p.wormDeaths;
+        mushroomSpawns = p.mushroomSpawns;
+        mushroomDeaths = p.mushroomDeaths;
+        lookups = p.lookups;
+    }
+}
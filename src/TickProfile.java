@@ -0,0 +1,94 @@
+// Счётчики последнего тика: длительность фаз, рождения и смерти, обращения к индексам
+// клеток. Заполняются всегда — это несколько сложений и System.nanoTime на фазу, —
+// а в Flight Recorder уходят событием TickEvent, только когда оно включено в записи.
+// Объект один на мир и переиспользуется, поэтому читать его нужно между тиками
+public final class TickProfile {
+    long molePlanNanos;
+    long moleCommitNanos;
+    long wormPlanNanos;
+    long wormCommitNanos;
+    long tunnelNanos;
+    long mushroomNanos;
+    long rootNanos;
+
+    int moleSpawns;
+    int moleDeaths;
+    int wormSpawns;
+    int wormDeaths;
+    int mushroomSpawns;
+    int mushroomDeaths;
+    // Запросы «кто в клетке». В параллельном коммите полосы считают их отдельно,
+    // World.endStripEffects складывает — гонок нет
+    int lookups;
+
+    void reset() {
+        molePlanNanos = moleCommitNanos = 0;
+        wormPlanNanos = wormCommitNanos = 0;
+        tunnelNanos = mushroomNanos = rootNanos = 0;
+        moleSpawns = moleDeaths = 0;
+        wormSpawns = wormDeaths = 0;
+        mushroomSpawns = mushroomDeaths = 0;
+        lookups = 0;
+    }
+
+    public long getMolePlanNanos() {
+        return molePlanNanos;
+    }
+
+    public long getMoleCommitNanos() {
+        return moleCommitNanos;
+    }
+
+    public long getWormPlanNanos() {
+        return wormPlanNanos;
+    }
+
+    public long getWormCommitNanos() {
+        return wormCommitNanos;
+    }
+
+    public long getTunnelNanos() {
+        return tunnelNanos;
+    }
+
+    public long getMushroomNanos() {
+        return mushroomNanos;
+    }
+
+    public long getRootNanos() {
+        return rootNanos;
+    }
+
+    public long getTotalNanos() {
+        return molePlanNanos + moleCommitNanos + wormPlanNanos + wormCommitNanos
+                + tunnelNanos + mushroomNanos + rootNanos;
+    }
+
+    public int getMoleSpawns() {
+        return moleSpawns;
+    }
+
+    public int getMoleDeaths() {
+        return moleDeaths;
+    }
+
+    public int getWormSpawns() {
+        return wormSpawns;
+    }
+
+    public int getWormDeaths() {
+        return wormDeaths;
+    }
+
+    public int getMushroomSpawns() {
+        return mushroomSpawns;
+    }
+
+    public int getMushroomDeaths() {
+        return mushroomDeaths;
+    }
+
+    public int getLookups() {
+        return lookups;
+    }
+}
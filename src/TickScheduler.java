@@ -0,0 +1,31 @@
+// Переводит реальное время кадров в фиксированные тики World.
+// Результат симуляции не зависит от частоты кадров: 60 Гц, 144 Гц или вовсе без экрана
+public class TickScheduler {
+    // Больше этого за один кадр не догоняем, иначе после зависания симуляция уйдёт в штопор
+    private static final double MAX_FRAME_TIME = 0.25;
+
+    private final World world;
+    private double accumulator = 0;
+
+    public TickScheduler(World world) {
+        this.world = world;
+    }
+
+    // Проводит столько тиков, сколько уместилось в кадр с учётом множителя скорости
+    public int advance(double frameSeconds, double speedMultiplier) {
+        accumulator += Math.min(frameSeconds, MAX_FRAME_TIME) * speedMultiplier;
+
+        int ticks = 0;
+        while (accumulator >= World.TICK_DURATION) {
+            world.tick();
+            accumulator -= World.TICK_DURATION;
+            ticks++;
+        }
+        return ticks;
+    }
+
+    // Доля до следующего тика в [0, 1) — для интерполяции при отрисовке
+    public double getAlpha() {
+        return accumulator / World.TICK_DURATION;
+    }
+}
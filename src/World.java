@@ -1,66 +1,140 @@
-import javafx.scene.canvas.Canvas;
-import javafx.scene.canvas.GraphicsContext;
-import javafx.scene.layout.Pane;
-import javafx.scene.paint.Color;
-import java.util.Random;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
-import java.util.Iterator;
-
-public class World extends Pane {
-    public static final int CELL_SIZE = 10;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.LongConsumer;
+
+// Состояние и правила симуляции без JavaFX: можно гонять без экрана.
+// Отрисовкой занимается WorldView, который подписывается через WorldListener
+public class World {
+    public static final int FROZEN_TOP_LAYERS = 20;
+
+    // Симуляция идёт фиксированными шагами: TICKS_PER_SECOND тиков на секунду модельного времени
+    public static final int TICKS_PER_SECOND = 60;
+    public static final double TICK_DURATION = 1.0 / TICKS_PER_SECOND;
     public final int width;
     public final int height;
 
-    private final Canvas backgroundCanvas;
-    private final Canvas tunnelsCanvas;
-    private final Canvas gridCanvas;
-
-    private final List<Mole> moles = new ArrayList<>();
-    private final List<Worm> worms = new ArrayList<>();
-    private final List<Mushroom> mushrooms = new ArrayList<>();
-
-
-    public final int[][] tunnelMap;
-    public final boolean[][] waterMap;
-    public final boolean[][] emptyMap;
-
-    private boolean[][] gasChambers;
-
-
-    private double rootGrowthTimer = 0;
-    private final double ROOT_GROWTH_INTERVAL = 0.5; // корни растут раз в 0.5 секунды
+    // Массив заменяется целиком при подписке: обход for-each по нему не создаёт итератора
+    private WorldListener[] listeners = new WorldListener[0];
+
+    // Кроты и черви хранятся столбцами, со своим индексом занятости клеток
+    private final Moles moles;
+    private final Worms worms;
+    private final ArrayList<Mushroom> mushrooms = new ArrayList<>();
+
+    // Индекс занятости клеток для грибов: по клетке сразу находим гриб, без обхода списка.
+    // Массив клеток чанка заводится с первым грибом в нём
+    private final Mushroom[][] mushroomCells;
+    // Убранный гриб помечается съеденным и сразу уходит из индекса клеток, а список
+    // сжимается одним проходом в конце фазы (compactMushrooms) — без сдвига хвоста
+    // на каждое удаление и без копии списка ради безопасного обхода
+    private int removedMushroomCount = 0;
+    private boolean ticking = false;
+
+    // Вода, пустоты, корни и туннели клеток по чанкам (см. Grid)
+    private final Grid grid;
+
+    // Газовые камеры не хранятся заранее: маска чанка (бит x в строке y) выводится из seed
+    // при первом запросе, так что нетронутые чанки не занимают памяти.
+    // Маски запрашиваются и из параллельной фазы тика, отсюда атомарный массив
+    private final AtomicReferenceArray<long[]> gasMasks;
+    private final long gasSeed;
+
+    // Туннели не отсчитываются каждый тик: в клетке хранится момент tunnelClock,
+    // когда туннель осыплется. Сколько осталось, считается по запросу
+    private int tunnelClock = 0;
+    // Клеток с туннелем сейчас
+    private int tunnelCount = 0;
+
+    // Колесо осыпания: в слоте expiry % FADE_WHEEL_SIZE лежат клетки (индексы Grid),
+    // чей туннель должен осыпаться в этот момент. Срок не дальше TUNNEL_DURATION вперёд,
+    // так что слоты не пересекаются; каждая клетка стоит в колесе не больше одного раза.
+    // Слот — очередь, связанная через саму клетку (Grid.getFadeNext), поэтому колесо
+    // не растёт и не перевыделяется, сколько бы туннелей ни осыпалось за тик
+    private static final int FADE_WHEEL_SIZE = Moles.TUNNEL_DURATION + 1;
+    private static final int NO_CELL = -1;
+    private final int[] fadeHead = new int[FADE_WHEEL_SIZE];
+    private final int[] fadeTail = new int[FADE_WHEEL_SIZE];
+    private final int[] fadeWheelSize = new int[FADE_WHEEL_SIZE];
+
+    // Расстояние (по Чебышёву) до ближайшей воды и доля воды вокруг клетки
+    // считаются один раз после генерации, по чанкам рядом с водой (см. Grid)
+    private static final int NEAR_WATER_RADIUS = 3;
+    private static final int NO_WATER = Integer.MAX_VALUE;
+    private static final int WATER_INFLUENCE_RADIUS = 5;
+
+    // Смещение до ближайшей воды в окне (2 * NEAREST_WATER_RADIUS + 1)² вокруг клетки.
+    // При равных расстояниях выигрывает меньший dx, затем меньший dy
+    public static final int NEAREST_WATER_RADIUS = Grid.WATER_FIELD_RADIUS;
+    public static final int NO_NEAREST_WATER = Byte.MIN_VALUE;
+
+
+    private long tickCount = 0;
+    private final int ROOT_GROWTH_INTERVAL = TICKS_PER_SECOND / 2; // корни растут раз в 0.5 секунды
     private final int MAX_ROOT_DEPTH = 12;
-    private final boolean[][] dungMap;
 
 
 
 
-    private final Random random = new Random();
+    // Все случайности мира выводятся из seed: генерация идёт из random, рост корней —
+    // из отдельного потока, а каждое существо получает свой поток (см. Rng).
+    // Одинаковые seed и параметры дают одинаковый прогон, общего состояния у потоков нет.
+    // После генерации random не нужен; всё, что тратится в тиках, — long-состояния Rng
+    private final long seed;
+    private final SplittableRandom random;
+    private final long[] rootRng = new long[1];
 
-    private final List<Root> roots = new ArrayList<>();
+    // Корни — флаги Grid.ROOT и Grid.ROOT_TIP вместо объекта на каждый корень.
+    // Растущие кончики корней (индексы Grid) — рост обходит только их
+    private int[] rootTips = new int[16];
+    private int rootTipCount = 0;
 
 
     private Season season;
 
+    // Пул для параллельной фазы тика; null — всё в текущем потоке.
+    // Результат тика от пула не зависит, меняется только время
+    private ForkJoinPool pool = ForkJoinPool.commonPool();
+    private final StripPartition partition;
+    // Параллельный коммит (StripPartition.commitAll): пока полосы идут одновременно, общие
+    // последствия — счётчики профиля, колесо осыпания, кончики корней, уведомления
+    // слушателей — пишутся в журнал полосы, где лежит клетка, и применяются в порядке
+    // слотов через applyStripEffects. Полоса трогает только свои строки, так что её журнал
+    // пишет один поток. Журналы заводятся с первым параллельным коммитом
+    private StripLog[] stripLogs;
+    private boolean deferring = false;
+    // Счётчики тика — всегда включены, в JFR уходят событием TickEvent
+    private final TickProfile profile = new TickProfile();
+
     public World(int width, int height, int moleCount,
                  int waterCount, int minWaterSize, int maxWaterSize, Season season) {
+        this(width, height, moleCount, waterCount, minWaterSize, maxWaterSize, season,
+                new SplittableRandom().nextLong());
+    }
+
+    public World(int width, int height, int moleCount,
+                 int waterCount, int minWaterSize, int maxWaterSize, Season season, long seed) {
+        this.seed = seed;
+        this.random = new SplittableRandom(seed);
+        this.rootRng[0] = random.nextLong();
         this.season = season;
         this.width = width;
         this.height = height;
 
-        this.tunnelMap = new int[width][height];
-        this.waterMap = new boolean[width][height];
-        this.emptyMap = new boolean[width][height];
-        this.dungMap = new boolean[width][height]; // Инициализируем здесь
-
-
-        // Создаем слои отрисовки
-        this.backgroundCanvas = new Canvas(width * CELL_SIZE, height * CELL_SIZE);
-        this.tunnelsCanvas = new Canvas(width * CELL_SIZE, height * CELL_SIZE);
-        this.gridCanvas = new Canvas(width * CELL_SIZE, height * CELL_SIZE);
+        this.grid = new Grid(width, height);
+        this.gasMasks = new AtomicReferenceArray<>(grid.chunkCount());
+        this.gasSeed = random.nextLong();
 
-        this.getChildren().addAll(backgroundCanvas, tunnelsCanvas, gridCanvas);
+        this.moles = new Moles(grid);
+        this.worms = new Worms(grid);
+        this.mushroomCells = new Mushroom[grid.chunkCount()][];
+        this.partition = new StripPartition(height);
+        Arrays.fill(fadeHead, NO_CELL);
 
         // Создаем кротов
         for (int i = 0; i < moleCount; i++) {
@@ -69,7 +143,7 @@ public class World extends Pane {
             do {
                 x = random.nextInt(width);
                 if (season == Season.WINTER) {
-                    y = random.nextInt(height - Main.FROZEN_TOP_LAYERS) + Main.FROZEN_TOP_LAYERS;
+                    y = random.nextInt(height - FROZEN_TOP_LAYERS) + FROZEN_TOP_LAYERS;
                 } else {
                     y = random.nextInt(height);
                 }
@@ -77,36 +151,207 @@ public class World extends Pane {
             } while ((isWater(x, y) || hasMoleAt(x, y)) && attempts < 100);
 
             if (attempts < 100) {
-                Mole mole = new Mole(x, y, this);
-                moles.add(mole);
-                getChildren().add(mole.getVisual());
+                addMole(x, y, random.nextLong());
             }
         }
 
 
         // Генерируем воду
         generateWater(waterCount, minWaterSize, maxWaterSize);
+        buildWaterFields();
 
         // Генерируем червей около воды
         generateInitialWorms(waterCount * 2);
 
         generateRoots();
 
-        gasChambers = new boolean[width][height];
-        generateGasChambers();
         generateInitialMushrooms(waterCount); // Генерируем грибы около водоемов
+    }
+
 
+    // Мир из снимка (см. WorldSnapshot). Производное, что строится быстро, — газ
+    // и индексы клеток — в снимке не хранится
+    World(SnapshotReader in) throws IOException {
+        this.width = in.getInt();
+        this.height = in.getInt();
+        int seasonIndex = in.getByte();
+        // Номер клетки — int из номера чанка и клетки в нём, больше поле не адресовать
+        long chunks = (((long) width + Grid.CHUNK_MASK) >> Grid.CHUNK_BITS)
+                * (((long) height + Grid.CHUNK_MASK) >> Grid.CHUNK_BITS);
+        if (width <= 0 || height <= 0 || chunks > Integer.MAX_VALUE >> Grid.CHUNK_CELL_BITS
+                || seasonIndex < 0 || seasonIndex >= Season.values().length) {
+            throw new IOException("Неверный заголовок мира в снимке");
+        }
+        this.season = Season.values()[seasonIndex];
+        this.seed = in.getLong();
+        this.random = new SplittableRandom(seed);
+        this.gasSeed = in.getLong();
+        this.tickCount = in.getLong();
+        this.tunnelClock = in.getInt();
+        this.tunnelCount = in.getInt();
+        this.rootRng[0] = in.getLong();
+
+        this.grid = new Grid(width, height);
+        this.gasMasks = new AtomicReferenceArray<>(grid.chunkCount());
+        this.moles = new Moles(grid);
+        this.worms = new Worms(grid);
+        this.mushroomCells = new Mushroom[grid.chunkCount()][];
+        this.partition = new StripPartition(height);
+
+        grid.read(in);
+        if (tunnelCount < 0 || tunnelCount > (long) width * height) {
+            throw new IOException("Неверное число туннелей в снимке: " + tunnelCount);
+        }
 
-        // Инициализируем графику
-        drawBackground();
-        drawGrid();
+        rootTipCount = in.getCount(4);
+        rootTips = new int[Math.max(rootTips.length, rootTipCount)];
+        in.getInts(rootTips, rootTipCount);
+        for (int i = 0; i < rootTipCount; i++) {
+            if (!grid.isCell(rootTips[i])) {
+                throw new IOException("Неверная клетка кончика корня в снимке: " + rootTips[i]);
+            }
+        }
+
+        // В колесо попадают только клетки туннелей: у их чанков заведены списки осыпания
+        Arrays.fill(fadeHead, NO_CELL);
+        long fading = 0;
+        for (int slot = 0; slot < FADE_WHEEL_SIZE; slot++) {
+            int size = in.getCount(4);
+            fading += size;
+            if (fading > tunnelCount) {
+                throw new IOException("В колесе осыпания больше клеток, чем туннелей: " + fading);
+            }
+            for (int k = 0; k < size; k++) {
+                int cell = in.getInt();
+                if (!grid.isCell(cell) || !grid.has(cell, Grid.TUNNEL)) {
+                    throw new IOException("Неверная клетка туннеля в снимке: " + cell);
+                }
+                appendFade(slot, cell);
+            }
+        }
+
+        moles.read(in);
+        worms.read(in);
+
+        // Грибы: порядок списка и то, кто из грибов записан в индекс клеток, — как было.
+        // На гриб приходится 18 байт: координаты, состояние и два флага
+        int mushroomCount = in.getCount(18);
+        int[] xs = new int[mushroomCount];
+        int[] ys = new int[mushroomCount];
+        long[] states = new long[mushroomCount];
+        boolean[] alive = new boolean[mushroomCount];
+        boolean[] indexed = new boolean[mushroomCount];
+        in.getInts(xs, mushroomCount);
+        in.getInts(ys, mushroomCount);
+        in.getLongs(states, mushroomCount);
+        in.getBooleans(alive, mushroomCount);
+        in.getBooleans(indexed, mushroomCount);
+        for (int i = 0; i < mushroomCount; i++) {
+            if (!grid.contains(xs[i], ys[i])) {
+                throw new IOException("Гриб вне поля в снимке: " + xs[i] + "," + ys[i]);
+            }
+            Mushroom m = new Mushroom(xs[i], ys[i], states[i]);
+            if (!alive[i]) m.consume();
+            mushrooms.add(m);
+            if (indexed[i]) {
+                int cell = grid.index(xs[i], ys[i]);
+                Mushroom[] cells = mushroomCells[Grid.chunkOf(cell)];
+                if (cells == null) {
+                    cells = mushroomCells[Grid.chunkOf(cell)] = new Mushroom[Grid.CHUNK_CELLS];
+                }
+                cells[Grid.localOf(cell)] = m;
+            }
+        }
     }
 
+    // Парный конструктору из снимка: тот же порядок полей
+    void writeSnapshot(SnapshotWriter out) throws IOException {
+        out.putInt(width);
+        out.putInt(height);
+        out.putByte(season.ordinal());
+        out.putLong(seed);
+        out.putLong(gasSeed);
+        out.putLong(tickCount);
+        out.putInt(tunnelClock);
+        out.putInt(tunnelCount);
+        out.putLong(rootRng[0]);
+
+        grid.write(out);
+
+        out.putInt(rootTipCount);
+        out.putInts(rootTips, rootTipCount);
+
+        for (int slot = 0; slot < FADE_WHEEL_SIZE; slot++) {
+            out.putInt(fadeWheelSize[slot]);
+            for (int cell = fadeHead[slot]; cell != NO_CELL; cell = grid.getFadeNext(cell)) {
+                out.putInt(cell);
+            }
+        }
+
+        moles.write(out);
+        worms.write(out);
+
+        int mushroomCount = mushrooms.size();
+        int[] xs = new int[mushroomCount];
+        int[] ys = new int[mushroomCount];
+        long[] states = new long[mushroomCount];
+        boolean[] alive = new boolean[mushroomCount];
+        boolean[] indexed = new boolean[mushroomCount];
+        for (int i = 0; i < mushroomCount; i++) {
+            Mushroom m = mushrooms.get(i);
+            xs[i] = m.getX();
+            ys[i] = m.getY();
+            states[i] = m.getRngState();
+            alive[i] = m.isAlive();
+            int cell = grid.index(m.getX(), m.getY());
+            Mushroom[] cells = mushroomCells[Grid.chunkOf(cell)];
+            indexed[i] = cells != null && cells[Grid.localOf(cell)] == m;
+        }
+        out.putInt(mushroomCount);
+        out.putInts(xs, mushroomCount);
+        out.putInts(ys, mushroomCount);
+        out.putLongs(states, mushroomCount);
+        out.putBooleans(alive, mushroomCount);
+        out.putBooleans(indexed, mushroomCount);
+    }
 
     public Season getSeason() {
         return season;
     }
 
+    public long getSeed() {
+        return seed;
+    }
+
+    public void addListener(WorldListener listener) {
+        listeners = Arrays.copyOf(listeners, listeners.length + 1);
+        listeners[listeners.length - 1] = listener;
+    }
+
+    public void removeListener(WorldListener listener) {
+        for (int i = 0; i < listeners.length; i++) {
+            if (listeners[i] != listener) continue;
+            WorldListener[] rest = new WorldListener[listeners.length - 1];
+            System.arraycopy(listeners, 0, rest, 0, i);
+            System.arraycopy(listeners, i + 1, rest, i, rest.length - i);
+            listeners = rest;
+            return;
+        }
+    }
+
+    // Популяции отдаются для чтения (отрисовка, статистика); менять их может только мир
+    public Moles getMoles() {
+        return moles;
+    }
+
+    public Worms getWorms() {
+        return worms;
+    }
+
+    public List<Mushroom> getMushrooms() {
+        return Collections.unmodifiableList(mushrooms);
+    }
+
 
     private void generateWater(int waterCount, int minSize, int maxSize) {
         for (int i = 0; i < waterCount; i++) {
@@ -121,15 +366,250 @@ public class World extends Pane {
         for (int x = Math.max(0, centerX - size); x < Math.min(width, centerX + size); x++) {
             for (int y = Math.max(0, centerY - size); y < Math.min(height, centerY + size); y++) {
                 if (Math.sqrt(Math.pow(x - centerX, 2) + Math.pow(y - centerY, 2)) <= size/2.0) {
-                    waterMap[x][y] = true;
+                    grid.set(grid.index(x, y), Grid.WATER);
                 }
             }
         }
     }
+    // Поля, производные от воды. Вызывать после каждого изменения воды.
+    // Считаются только для чанков с водой и их соседей: поле чанка видит воду
+    // не дальше WATER_FIELD_RADIUS < CHUNK_SIZE, остальные чанки остаются «без воды»
+    private void buildWaterFields() {
+        boolean[] needed = new boolean[grid.chunkCount()];
+        for (int chunk = 0; chunk < grid.chunkCount(); chunk++) {
+            if (!chunkHasWater(chunk)) continue;
+            int cx = chunk % grid.chunksX, cy = chunk / grid.chunksX;
+            for (int ny = Math.max(0, cy - 1); ny <= Math.min(grid.chunksY - 1, cy + 1); ny++) {
+                for (int nx = Math.max(0, cx - 1); nx <= Math.min(grid.chunksX - 1, cx + 1); nx++) {
+                    needed[ny * grid.chunksX + nx] = true;
+                }
+            }
+        }
+        for (int chunk = 0; chunk < grid.chunkCount(); chunk++) {
+            if (needed[chunk]) buildChunkWaterFields(chunk);
+        }
+    }
+
+    private boolean chunkHasWater(int chunk) {
+        if (!grid.isAllocated(chunk)) return false;
+        int base = chunk << Grid.CHUNK_CELL_BITS;
+        for (int i = 0; i < Grid.CHUNK_CELLS; i++) {
+            if (grid.has(base + i, Grid.WATER)) return true;
+        }
+        return false;
+    }
+
+    // Все поля чанка по окну из чанка и полей шириной r вокруг; вода за окном
+    // дальше r от любой клетки чанка и на результат не влияет
+    private void buildChunkWaterFields(int chunk) {
+        int r = Grid.WATER_FIELD_RADIUS;
+        int size = Grid.CHUNK_SIZE;
+        int span = size + 2 * r;
+        int originX = (chunk % grid.chunksX) * size - r;
+        int originY = (chunk / grid.chunksX) * size - r;
+
+        boolean[] water = new boolean[span * span];
+        boolean anyWater = false;
+        for (int wy = 0; wy < span; wy++) {
+            for (int wx = 0; wx < span; wx++) {
+                if (isWater(originX + wx, originY + wy)) {
+                    water[wy * span + wx] = true;
+                    anyWater = true;
+                }
+            }
+        }
+        // Соседний чанк может не дотягиваться до воды — тогда он остаётся пустым
+        if (!anyWater) return;
+
+        byte[] distance = new byte[Grid.CHUNK_CELLS];
+        byte[] count = new byte[Grid.CHUNK_CELLS];
+        byte[] nearestDx = new byte[Grid.CHUNK_CELLS];
+        byte[] nearestDy = new byte[Grid.CHUNK_CELLS];
+        buildWaterDistance(water, span, distance);
+        buildWaterCount(water, span, count);
+        buildNearestWater(water, span, nearestDx, nearestDy);
+        grid.setWaterFields(chunk, distance, count, nearestDx, nearestDy);
+
+        int base = chunk << Grid.CHUNK_CELL_BITS;
+        for (int i = 0; i < Grid.CHUNK_CELLS; i++) {
+            if (distance[i] <= NEAR_WATER_RADIUS) grid.set(base + i, Grid.NEAR_WATER);
+        }
+    }
+
+    // Многоисточниковый BFS по 8 соседям: число шагов и есть расстояние по Чебышёву
+    private static void buildWaterDistance(boolean[] water, int span, byte[] out) {
+        int r = Grid.WATER_FIELD_RADIUS;
+        int[] distance = new int[span * span];
+        int[] queue = new int[span * span];
+        int head = 0, tail = 0;
+
+        for (int i = 0; i < span * span; i++) {
+            if (water[i]) {
+                queue[tail++] = i;
+            } else {
+                distance[i] = NO_WATER;
+            }
+        }
+
+        while (head < tail) {
+            int cell = queue[head++];
+            int cx = cell % span;
+            int cy = cell / span;
+            int next = distance[cell] + 1;
+            if (next > r) continue;
+
+            for (int dx = -1; dx <= 1; dx++) {
+                for (int dy = -1; dy <= 1; dy++) {
+                    int nx = cx + dx;
+                    int ny = cy + dy;
+                    if (nx < 0 || nx >= span || ny < 0 || ny >= span) continue;
+                    int neighbour = ny * span + nx;
+                    if (distance[neighbour] == NO_WATER) {
+                        distance[neighbour] = next;
+                        queue[tail++] = neighbour;
+                    }
+                }
+            }
+        }
+
+        for (int ly = 0; ly < Grid.CHUNK_SIZE; ly++) {
+            for (int lx = 0; lx < Grid.CHUNK_SIZE; lx++) {
+                int d = distance[(ly + r) * span + lx + r];
+                out[ly * Grid.CHUNK_SIZE + lx] = (byte) Math.min(d, Grid.FAR_FROM_WATER);
+            }
+        }
+    }
+
+    // Вода в квадрате (2 * WATER_INFLUENCE_RADIUS + 1)² по префиксным суммам окна
+    private static void buildWaterCount(boolean[] water, int span, byte[] out) {
+        int r = Grid.WATER_FIELD_RADIUS;
+        int k = WATER_INFLUENCE_RADIUS;
+        int stride = span + 1;
+        int[] prefix = new int[stride * stride];
+        for (int y = 0; y < span; y++) {
+            int row = 0;
+            for (int x = 0; x < span; x++) {
+                if (water[y * span + x]) row++;
+                prefix[(y + 1) * stride + x + 1] = prefix[y * stride + x + 1] + row;
+            }
+        }
+
+        for (int ly = 0; ly < Grid.CHUNK_SIZE; ly++) {
+            for (int lx = 0; lx < Grid.CHUNK_SIZE; lx++) {
+                int x0 = lx + r - k, x1 = lx + r + k + 1;
+                int y0 = ly + r - k, y1 = ly + r + k + 1;
+                int n = prefix[y1 * stride + x1] - prefix[y1 * stride + x0]
+                        - prefix[y0 * stride + x1] + prefix[y0 * stride + x0];
+                out[ly * Grid.CHUNK_SIZE + lx] = (byte) n;
+            }
+        }
+    }
+
+    // Два прохода: сначала в каждом столбце ближайшая вода по вертикали,
+    // затем по строке выбираем столбец с минимальным dx² + dy²
+    private static void buildNearestWater(boolean[] water, int span, byte[] outDx, byte[] outDy) {
+        int r = Grid.WATER_FIELD_RADIUS;
+        byte[] columnDy = new byte[span * span];
+
+        for (int x = 0; x < span; x++) {
+            int above = -1; // последняя вода сверху (y меньше)
+            for (int y = 0; y < span; y++) {
+                if (water[y * span + x]) above = y;
+                columnDy[y * span + x] = above >= 0 && y - above <= r ? (byte)(above - y) : (byte) NO_NEAREST_WATER;
+            }
+            int below = -1; // ближайшая вода снизу (y больше)
+            for (int y = span - 1; y >= 0; y--) {
+                if (water[y * span + x]) below = y;
+                if (below < 0 || below - y > r) continue;
+                // При равенстве остаётся вода сверху: в порядке обхода dy она раньше
+                int up = columnDy[y * span + x];
+                if (up == NO_NEAREST_WATER || below - y < -up) {
+                    columnDy[y * span + x] = (byte)(below - y);
+                }
+            }
+        }
+
+        for (int ly = 0; ly < Grid.CHUNK_SIZE; ly++) {
+            for (int lx = 0; lx < Grid.CHUNK_SIZE; lx++) {
+                int bestDx = NO_NEAREST_WATER, bestDy = NO_NEAREST_WATER;
+                int minDist = Integer.MAX_VALUE;
+
+                for (int dx = -r; dx <= r; dx++) {
+                    int dy = columnDy[(ly + r) * span + lx + r + dx];
+                    if (dy == NO_NEAREST_WATER) continue;
+
+                    int dist = dx * dx + dy * dy;
+                    if (dist < minDist) {
+                        minDist = dist;
+                        bestDx = dx;
+                        bestDy = dy;
+                    }
+                }
+
+                outDx[ly * Grid.CHUNK_SIZE + lx] = (byte) bestDx;
+                outDy[ly * Grid.CHUNK_SIZE + lx] = (byte) bestDy;
+            }
+        }
+    }
+
+    // dx до ближайшей воды или NO_NEAREST_WATER, если в окне её нет
+    public int getNearestWaterDx(int x, int y) {
+        return isValidPosition(x, y) ? grid.getNearestWaterDx(grid.index(x, y)) : NO_NEAREST_WATER;
+    }
+
+    public int getNearestWaterDy(int x, int y) {
+        return isValidPosition(x, y) ? grid.getNearestWaterDy(grid.index(x, y)) : NO_NEAREST_WATER;
+    }
+
     public void markTunnelCell(int x, int y) {
         if (x >= 0 && x < width && y >= 0 && y < height) {
-            tunnelMap[x][y] = Mole.TUNNEL_DURATION;
+            int cell = grid.index(x, y);
+            grid.setTunnelExpiry(cell, tunnelClock + Moles.TUNNEL_DURATION);
+            // Повторно прорытая клетка уже стоит в колесе, новый срок проверится в её слоте
+            boolean fresh = !grid.has(cell, Grid.TUNNEL);
+            if (fresh) grid.set(cell, Grid.TUNNEL);
+            if (deferring) {
+                stripLog(y).add(StripLog.TUNNEL_DUG, cell, fresh ? 1 : 0);
+            } else {
+                tunnelDug(cell, fresh);
+            }
+        }
+    }
+
+    // Срок прорытого за тик туннеля одинаков, поэтому постановку в колесо можно отложить
+    private void tunnelDug(int cell, boolean fresh) {
+        if (fresh) {
+            tunnelCount++;
+            scheduleFade(cell, tunnelClock + Moles.TUNNEL_DURATION);
+        }
+        int x = grid.x(cell);
+        int y = grid.y(cell);
+        for (WorldListener listener : listeners) {
+            listener.tunnelDug(x, y);
+        }
+    }
+
+    // Часы туннелей — int и за 2^31 тиков переполняются: floorMod держит слот в колесе.
+    // Слоты по обе стороны переполнения могут совпасть, но клетка в чужом слоте
+    // только переедет дальше — срок сверяется по tunnelRemaining
+    private static int fadeSlot(int time) {
+        return Math.floorMod(time, FADE_WHEEL_SIZE);
+    }
+
+    private void scheduleFade(int cell, int time) {
+        appendFade(fadeSlot(time), cell);
+    }
+
+    // В конец очереди слота: клетки осыпаются в порядке постановки
+    private void appendFade(int slot, int cell) {
+        grid.setFadeNext(cell, NO_CELL);
+        if (fadeHead[slot] == NO_CELL) {
+            fadeHead[slot] = cell;
+        } else {
+            grid.setFadeNext(fadeTail[slot], cell);
         }
+        fadeTail[slot] = cell;
+        fadeWheelSize[slot]++;
     }
 
     private void generateInitialWorms(int wormCount) {
@@ -141,17 +621,15 @@ public class World extends Pane {
                 y = random.nextInt(height);
 
                 // Зимой проверяем, чтобы черви не спавнились в замерзших слоях
-                if (season == Season.WINTER && y < Main.FROZEN_TOP_LAYERS) {
-                    y = Main.FROZEN_TOP_LAYERS + random.nextInt(height - Main.FROZEN_TOP_LAYERS);
+                if (season == Season.WINTER && y < FROZEN_TOP_LAYERS) {
+                    y = FROZEN_TOP_LAYERS + random.nextInt(height - FROZEN_TOP_LAYERS);
                 }
 
                 attempts++;
             } while ((!isNearWater(x, y) || isWater(x, y) || hasWormAt(x, y)) && attempts < 100);
 
             if (attempts < 100) {
-                Worm worm = new Worm(x, y);
-                worms.add(worm);
-                this.getChildren().add(worm.getVisual());
+                addWorm(x, y, random.nextLong());
             }
         }
     }
@@ -160,15 +638,12 @@ public class World extends Pane {
         for (int x = 0; x < width; x++) {
             if (isNearWater(x, 0) && !hasRootAt(x, 0)) {
                 if (random.nextDouble() < 1) { // было 0.05 — увеличили до 40%
-                    Root root = new Root(x, 0);
-                    roots.add(root);
-                    getChildren().add(root.getVisual());
+                    addRoot(x, 0);
                 }
             }
         }
     }
     private void growRootsDownward() {
-        List<Root> newRoots = new ArrayList<>();
         double growthChance = 0.2; // Стандартный шанс
 
         if (season == Season.SUMMER) {
@@ -176,281 +651,357 @@ public class World extends Pane {
         } else if (season == Season.WINTER) {
             return; // Зимой не растут
         }
-        for (Root root : roots) {
-            if (!root.isAlive()) continue;
-
-            int belowY = root.getY() + 1;
-            int x = root.getX();
 
-            if (belowY >= height || belowY > MAX_ROOT_DEPTH) continue;
+        // Новые кончики дописываются в конец и в этом проходе не растут
+        int count = rootTipCount;
+        int kept = 0;
+        for (int i = 0; i < count; i++) {
+            int tip = rootTips[i];
+            int x = grid.x(tip);
+            int y = grid.y(tip);
+
+            if (!canRootGrowBelow(x, y)) {
+                grid.clear(tip, Grid.ROOT_TIP);
+                continue;
+            }
 
-            if (!hasRootAt(x, belowY) && !isWater(x, belowY)) {
-                if (random.nextDouble() < 0.1) {
-                    Root newRoot = new Root(x, belowY);
-                    newRoots.add(newRoot);
-                    getChildren().add(newRoot.getVisual());
-                }
+            if (Rng.nextDouble(rootRng, 0) < 0.1) {
+                grid.clear(tip, Grid.ROOT_TIP);
+                addRoot(x, y + 1);
+            } else {
+                rootTips[kept++] = tip;
             }
         }
-        roots.addAll(newRoots);
-    }
 
+        // Сдвигаем кончики, появившиеся за проход, вслед за оставшимися
+        System.arraycopy(rootTips, count, rootTips, kept, rootTipCount - count);
+        rootTipCount = kept + (rootTipCount - count);
+    }
 
+    // Корень продолжает расти, пока под ним свободная клетка в пределах глубины
+    private boolean canRootGrowBelow(int x, int y) {
+        if (!grid.has(grid.index(x, y), Grid.ROOT)) return false;
+        int belowY = y + 1;
+        if (belowY >= height || belowY > MAX_ROOT_DEPTH) return false;
+        return !hasRootAt(x, belowY) && !isWater(x, belowY);
+    }
 
+    private void addRoot(int x, int y) {
+        grid.set(grid.index(x, y), Grid.ROOT);
+        addRootTip(x, y);
 
+        for (WorldListener l : listeners) l.rootAdded(x, y);
+    }
 
-    public boolean hasRootAt(int x, int y) {
-        for (Root root : roots) {
-            if (root.getX() == x && root.getY() == y && root.isAlive()) {
-                return true;
-            }
+    private void addRootTip(int x, int y) {
+        int cell = grid.index(x, y);
+        if (grid.has(cell, Grid.ROOT_TIP) || !canRootGrowBelow(x, y)) return;
+        grid.set(cell, Grid.ROOT_TIP);
+        if (deferring) {
+            stripLog(y).add(StripLog.ROOT_TIP, cell, 0);
+        } else {
+            appendRootTip(cell);
         }
-        return false;
     }
 
-    public Root getRootAt(int x, int y) {
-        for (Root root : roots) {
-            if (root.getX() == x && root.getY() == y && root.isAlive()) {
-                return root;
-            }
+    private void appendRootTip(int cell) {
+        if (rootTipCount == rootTips.length) {
+            rootTips = Arrays.copyOf(rootTips, rootTipCount * 2);
         }
-        return null;
+        rootTips[rootTipCount++] = cell;
     }
 
-    public void removeRoot(Root root) {
-        root.consume();  // Делаем корень "мертвым" и невидимым
+    public boolean hasRootAt(int x, int y) {
+        countLookup(y);
+        return grid.has(x, y, Grid.ROOT);
     }
 
+    public void removeRoot(int x, int y) {
+        if (!hasRootAt(x, y)) return;
+        // Запись в rootTips (если была) уберёт ближайший проход роста
+        grid.clear(grid.index(x, y), Grid.ROOT);
+        if (deferring) {
+            stripLog(y).add(StripLog.ROOT_REMOVED, x, y);
+        } else {
+            rootRemoved(x, y);
+        }
 
-    public void update(double deltaTime) {
-        List<Mole> molesToUpdate = new ArrayList<>(moles);
-        for (Mole mole : molesToUpdate) {
-            if (mole != null && mole.isAlive()) {
-                mole.update(deltaTime);
-            }
+        // Корень сверху снова может прорасти в освободившуюся клетку
+        if (hasRootAt(x, y - 1)) {
+            addRootTip(x, y - 1);
         }
+    }
 
-        // Обновляем червей
-        updateWorms();
+    private void rootRemoved(int x, int y) {
+        for (WorldListener l : listeners) l.rootRemoved(x, y);
+    }
 
-        // Обновляем туннели
-        updateTunnels();
 
-        // Обновляем грибы
-        updateMushrooms(deltaTime);
+    public void setPool(ForkJoinPool pool) {
+        this.pool = pool;
+    }
 
-        // Таймер роста корней
-        rootGrowthTimer += deltaTime;
-        if (rootGrowthTimer >= ROOT_GROWTH_INTERVAL) {
-            growRootsDownward();
-            rootGrowthTimer = 0;
+    // Заводит заранее всё, что мир иначе дозаводит по ходу тиков: чанки сетки, маски газа,
+    // индексы клеток, кончики корней на каждую клетку и столбцы популяций с запасом
+    // в factor раз от нынешней численности. После этого тик выделяет память только
+    // под новые грибы — на этом держится bench/AllocationCheck
+    void reserveCapacity(int factor) {
+        grid.allocateAll();
+        for (int chunk = 0; chunk < grid.chunkCount(); chunk++) {
+            if (gasMasks.get(chunk) == null) gasMasks.set(chunk, generateGas(chunk));
+            if (mushroomCells[chunk] == null) mushroomCells[chunk] = new Mushroom[Grid.CHUNK_CELLS];
         }
+        moles.reserve(Math.max(Animals.INITIAL_CAPACITY, moles.size() * factor));
+        worms.reserve(Math.max(Animals.INITIAL_CAPACITY, worms.size() * factor));
+        mushrooms.ensureCapacity(Math.max(Animals.INITIAL_CAPACITY, mushrooms.size() * factor));
+        if (rootTips.length < width * height) rootTips = Arrays.copyOf(rootTips, width * height);
+    }
 
+    // Дальше и до endStripEffects последствия коммита копятся в журналах полос
+    void deferStripEffects() {
+        if (stripLogs == null) {
+            stripLogs = new StripLog[partition.stripCount()];
+            for (int s = 0; s < stripLogs.length; s++) stripLogs[s] = new StripLog();
+        }
+        for (StripLog log : stripLogs) log.clear();
+        deferring = true;
+    }
 
-        // Очищаем и перерисовываем
-        GraphicsContext gc = tunnelsCanvas.getGraphicsContext2D();
-        gc.clearRect(0, 0, width * CELL_SIZE, height * CELL_SIZE);
-
-        // Рисуем туннели
-        drawAllTunnels();
+    // Сколько событий записано в журнал полосы — граница последствий очередного слота
+    int stripEffectCount(int strip) {
+        return stripLogs[strip].size;
+    }
 
+    void endStripEffects() {
+        deferring = false;
+        for (StripLog log : stripLogs) profile.lookups += log.lookups;
     }
 
-    public void updateWorms() {
-        List<Worm> wormsToUpdate = new ArrayList<>(worms);
-
-        for (Worm worm : wormsToUpdate) {
-            worm.update(this);
-            if (!worm.isAlive()) {
-                // Удаляем из основного списка и со сцены
-                worms.remove(worm);
-                getChildren().remove(worm.getVisual());
+    // Применяет события журнала полосы с from по to — последствия одного слота
+    void applyStripEffects(int strip, int from, int to) {
+        StripLog log = stripLogs[strip];
+        int[] events = log.events;
+        for (int k = from; k < to; k += 3) {
+            int a = events[k + 1], b = events[k + 2];
+            switch (events[k]) {
+                case StripLog.TUNNEL_DUG:
+                    tunnelDug(a, b != 0);
+                    break;
+                case StripLog.MOLE_DIED:
+                    moleDied(a);
+                    break;
+                case StripLog.WORM_DIED:
+                    wormDied(a);
+                    break;
+                case StripLog.ROOT_REMOVED:
+                    rootRemoved(a, b);
+                    break;
+                case StripLog.ROOT_TIP:
+                    appendRootTip(a);
+                    break;
+                case StripLog.MUSHROOM_REMOVED:
+                    mushroomRemoved(log.mushrooms[a]);
+                    break;
+                default:
+                    throw new IllegalStateException("Неизвестное событие полосы: " + events[k]);
             }
         }
     }
 
+    // Журнал полосы, в которой лежит строка y
+    private StripLog stripLog(int y) {
+        return stripLogs[y / StripPartition.STRIP_HEIGHT];
+    }
 
-    private void updateTunnels() {
-        for (int i = 0; i < width; i++) {
-            for (int j = 0; j < height; j++) {
-                if (tunnelMap[i][j] > 0) {
-                    tunnelMap[i][j]--;
-                }
-            }
+    private void countLookup(int y) {
+        if (deferring) {
+            stripLog(y).lookups++;
+        } else {
+            profile.lookups++;
         }
     }
 
+    public long getTick() {
+        return tickCount;
+    }
 
-    private void drawBackground() {
-        GraphicsContext gc = backgroundCanvas.getGraphicsContext2D();
+    // Один шаг симуляции длиной TICK_DURATION. Частоту шагов задаёт TickScheduler
+    public void tick() {
+        tickCount++;
+        ticking = true;
+        profile.reset();
+        // Событие создаётся только во время записи JFR, иначе тик ничего не выделяет
+        TickEvent event = TickEvent.TYPE.isEnabled() ? new TickEvent() : null;
+        if (event != null) event.begin();
+
+        // Планы считаются параллельно по полосам, затем применяются полосами (см. commitAll).
+        // Родившиеся за тик дописываются в конец и ходят со следующего тика
+        long start = System.nanoTime();
+        int moleCount = moles.size();
+        partition.planAll(pool, moles, moleCount, this);
+        long planned = System.nanoTime();
+        profile.molePlanNanos = planned - start;
+        partition.commitAll(pool, moles, moleCount, this);
+        moles.removeDead();
+        compactMushrooms();
+        profile.moleCommitNanos = System.nanoTime() - planned;
 
-        // Рисуем землю
-        gc.setFill(Color.rgb(60, 30, 10));
-        gc.fillRect(0, 0, width * CELL_SIZE, height * CELL_SIZE);
+        // Обновляем червей
+        updateWorms();
 
+        // Обновляем туннели
+        start = System.nanoTime();
+        updateTunnels();
+        long end = System.nanoTime();
+        profile.tunnelNanos = end - start;
 
-        // Затем рисуем затемненные области вокруг воды
-        gc.setFill(Color.rgb(50, 25, 8)); // Более темный оттенок земли
-        for (int x = 0; x < width; x++) {
-            for (int y = 0; y < height; y++) {
-                if (isNearWater(x, y) && !isWater(x, y)) {
-                    gc.fillRect(
-                            x * CELL_SIZE + 1,
-                            y * CELL_SIZE + 1,
-                            CELL_SIZE - 2,
-                            CELL_SIZE - 2
-                    );
-                }
-            }
-        }
+        // Обновляем грибы
+        updateMushrooms();
+        compactMushrooms();
+        start = end;
+        end = System.nanoTime();
+        profile.mushroomNanos = end - start;
 
-        // Рисуем водоёмы
-        gc.setFill(Color.rgb(30, 144, 255, 0.7));
-        for (int x = 0; x < width; x++) {
-            for (int y = 0; y < height; y++) {
-                if (waterMap[x][y]) {
-                    gc.fillRect(
-                            x * CELL_SIZE + 1,
-                            y * CELL_SIZE + 1,
-                            CELL_SIZE - 2,
-                            CELL_SIZE - 2
-                    );
-                }
-            }
+        // Таймер роста корней
+        if (tickCount % ROOT_GROWTH_INTERVAL == 0) {
+            growRootsDownward();
+            profile.rootNanos = System.nanoTime() - end;
         }
 
-        // Рисуем пустоты
-        gc.setFill(Color.BLACK);
-        for (int x = 0; x < width; x++) {
-            for (int y = 0; y < height; y++) {
-                if (emptyMap[x][y]) {
-                    gc.fillRect(
-                            x * CELL_SIZE + 1,
-                            y * CELL_SIZE + 1,
-                            CELL_SIZE - 2,
-                            CELL_SIZE - 2
-                    );
-                }
-            }
+        if (event != null) {
+            event.fill(tickCount, profile, moles.size(), worms.size(), mushrooms.size(), tunnelCount);
+            event.commit();
         }
+        ticking = false;
+        for (WorldListener l : listeners) l.tickEnded(tickCount);
+    }
 
-        // Рисуем газовые камеры
-        if (season == Season.SUMMER) {
-            gc.setFill(Color.rgb(0, 255, 0, 0.85)); // Более яркие и заметные летом
-        } else {
-            gc.setFill(Color.rgb(0, 255, 0, 0.25));
-        }
+    // Счётчики последнего тика; объект переиспользуется следующим тиком
+    public TickProfile getTickProfile() {
+        return profile;
+    }
 
-        for (int x = 0; x < width; x++) {
-            for (int y = 0; y < height; y++) {
-                if (gasChambers[x][y]) {
-                    gc.fillRect(
-                            x * CELL_SIZE + 1,
-                            y * CELL_SIZE + 1,
-                            CELL_SIZE - 2,
-                            CELL_SIZE - 2
-                    );
-                }
-            }
-        }
+    public void updateWorms() {
+        long start = System.nanoTime();
+        int wormCount = worms.size();
+        partition.planAll(pool, worms, wormCount, this);
+        long planned = System.nanoTime();
+        partition.commitAll(pool, worms, wormCount, this);
+        // Убираем умерших и съеденных за тик
+        worms.removeDead();
+        compactMushrooms();
+        profile.wormPlanNanos = planned - start;
+        profile.wormCommitNanos = System.nanoTime() - planned;
     }
 
-    private void drawAllTunnels() {
-        GraphicsContext gc = tunnelsCanvas.getGraphicsContext2D();
 
-        for (int x = 0; x < width; x++) {
-            for (int y = 0; y < height; y++) {
-                if (tunnelMap[x][y] > 0) {
-                    double alpha = 0.2 + 0.8 * (tunnelMap[x][y] / (double)Mole.TUNNEL_DURATION);
-                    gc.setFill(Color.rgb(139, 69, 19, alpha));
-                    gc.fillRect(
-                            x * CELL_SIZE + 1,
-                            y * CELL_SIZE + 1,
-                            CELL_SIZE - 2,
-                            CELL_SIZE - 2
-                    );
+    // Все туннели стареют на тик; работа только с теми, чей срок вышел.
+    // Пакетный доступ — для замеров в bench
+    void updateTunnels() {
+        tunnelClock++;
+        int slot = fadeSlot(tunnelClock);
+        int cell = fadeHead[slot];
+        fadeHead[slot] = NO_CELL;
+        fadeWheelSize[slot] = 0;
+        while (cell != NO_CELL) {
+            // Перенос в другой слот перепишет ссылку, поэтому следующую берём заранее
+            int next = grid.getFadeNext(cell);
+            int remaining = tunnelRemaining(cell);
+            if (remaining > 0) {
+                // Туннель прорыли заново — переезжает в слот нового срока
+                scheduleFade(cell, tunnelClock + remaining);
+            } else {
+                grid.clear(cell, Grid.TUNNEL);
+                tunnelCount--;
+                int x = grid.x(cell);
+                int y = grid.y(cell);
+                for (WorldListener listener : listeners) {
+                    listener.tunnelFaded(x, y);
                 }
             }
-        }
-
-        if (season == Season.WINTER) {
-            gc.setFill(Color.rgb(180, 220, 255, 0.3)); // голубоватый туман
-            gc.fillRect(
-                    0,
-                    0,
-                    width * CELL_SIZE,
-                    Main.FROZEN_TOP_LAYERS * CELL_SIZE
-            );
+            cell = next;
         }
     }
 
 
-
-    private void drawGrid() {
-        GraphicsContext gc = gridCanvas.getGraphicsContext2D();
-        gc.setStroke(Color.rgb(100, 70, 40, 0.7));
-        gc.setLineWidth(0.5);
-
-        for (int x = 0; x <= width; x++) {
-            gc.strokeLine(x * CELL_SIZE, 0, x * CELL_SIZE, height * CELL_SIZE);
-        }
-
-        for (int y = 0; y <= height; y++) {
-            gc.strokeLine(0, y * CELL_SIZE, width * CELL_SIZE, y * CELL_SIZE);
-        }
-    }
-
     // Вспомогательные методы
     public boolean isWater(int x, int y) {
-        return x >= 0 && x < width && y >= 0 && y < height && waterMap[x][y];
+        return grid.has(x, y, Grid.WATER);
     }
 
     public boolean isEmpty(int x, int y) {
-        return x >= 0 && x < width && y >= 0 && y < height && emptyMap[x][y];
+        return grid.has(x, y, Grid.EMPTY);
     }
 
     public boolean isNearWater(int x, int y) {
-        for (int i = -3; i <= 3; i++) {
-            for (int j = -3; j <= 3; j++) {
-                if (isWater(x + i, y + j)) {
-                    return true;
-                }
-            }
-        }
-        return false;
+        return grid.has(x, y, Grid.NEAR_WATER);
+    }
+
+    // Есть ли вода в квадрате (2 * radius + 1) вокруг клетки; за пределами поля — нет.
+    // Расстояния известны до NEAREST_WATER_RADIUS: дальняя вода в поле не записана,
+    // и радиус больше него ищет только в пределах NEAREST_WATER_RADIUS
+    public boolean isNearWater(int x, int y, int radius) {
+        return getWaterDistance(x, y) <= Math.min(radius, NEAREST_WATER_RADIUS);
+    }
+
+    // Расстояние до ближайшей воды по Чебышёву; Integer.MAX_VALUE, если воды нет
+    // ближе NEAREST_WATER_RADIUS
+    public int getWaterDistance(int x, int y) {
+        if (!isValidPosition(x, y)) return NO_WATER;
+        int distance = grid.getWaterDistance(grid.index(x, y));
+        return distance > NEAREST_WATER_RADIUS ? NO_WATER : distance;
     }
 
     public boolean hasWormAt(int x, int y) {
-        for (Worm worm : worms) {
-            if (worm.getX() == x && worm.getY() == y && worm.isAlive()) {
-                return true;
-            }
-        }
-        return false;
+        countLookup(y);
+        return worms.hasAt(x, y);
     }
 
-    public Worm getWormAt(int x, int y) {
-        for (Worm worm : worms) {
-            if (worm.getX() == x && worm.getY() == y && worm.isAlive()) {
-                return worm;
-            }
+    // Слот живого червя в клетке или -1
+    public int getWormAt(int x, int y) {
+        countLookup(y);
+        return worms.firstAt(x, y);
+    }
+
+    private void addWorm(int x, int y, long seed) {
+        int slot = worms.spawn(x, y, seed);
+        profile.wormSpawns++;
+        for (WorldListener l : listeners) l.wormAdded(worms.getId(slot));
+    }
+
+    public void killWorm(int slot) {
+        if (!worms.isAlive(slot)) return;
+        worms.kill(slot);
+        if (deferring) {
+            stripLog(worms.getY(slot)).add(StripLog.WORM_DIED, worms.getId(slot), 0);
+        } else {
+            wormDied(worms.getId(slot));
         }
-        return null;
     }
 
-    public void removeWorm(Worm worm) {
-        worms.remove(worm);
-        getChildren().remove(worm.getVisual());
+    private void wormDied(int id) {
+        profile.wormDeaths++;
+        for (WorldListener l : listeners) l.wormRemoved(id);
     }
-    public void removeMole(Mole mole) {
-        if (mole != null) {
-            getChildren().remove(mole.getVisual());
-            moles.remove(mole);
+
+    public void killMole(int slot) {
+        if (!moles.isAlive(slot)) return;
+        moles.kill(slot);
+        if (deferring) {
+            stripLog(moles.getY(slot)).add(StripLog.MOLE_DIED, moles.getId(slot), 0);
+        } else {
+            moleDied(moles.getId(slot));
         }
     }
 
+    private void moleDied(int id) {
+        profile.moleDeaths++;
+        for (WorldListener l : listeners) l.moleRemoved(id);
+    }
+
 
-    public void addWormNearWater(int nearX, int nearY) {
+    // seed потомка отщеплён от потока родителя (см. Rng.split)
+    public void addWormNearWater(int nearX, int nearY, long seed) {
         for (int i = -2; i <= 2; i++) {
             for (int j = -2; j <= 2; j++) {
                 int x = nearX + i;
@@ -458,9 +1009,7 @@ public class World extends Pane {
 
                 if (isValidPosition(x, y) && !isWater(x, y) &&
                         !hasWormAt(x, y) && isNearWater(x, y)) {
-                    Worm worm = new Worm(x, y);
-                    worms.add(worm);
-                    getChildren().add(worm.getVisual());
+                    addWorm(x, y, seed);
                     return;
                 }
             }
@@ -471,77 +1020,119 @@ public class World extends Pane {
         return x >= 0 && x < width && y >= 0 && y < height;
     }
     public double getWaterInfluence(int x, int y) {
-        int waterCells = 0;
-        int totalCells = 0;
-
-        for (int dx = -5; dx <= 5; dx++) {
-            for (int dy = -5; dy <= 5; dy++) {
-                if (isValidPosition(x+dx, y+dy)) {
-                    totalCells++;
-                    if (isWater(x+dx, y+dy)) waterCells++;
-                }
+        int r = WATER_INFLUENCE_RADIUS;
+        int x0 = Math.max(0, x - r), x1 = Math.min(width - 1, x + r);
+        int y0 = Math.max(0, y - r), y1 = Math.min(height - 1, y + r);
+
+        // Доля считается только по клеткам окна внутри поля, как и раньше
+        int totalCells = Math.max(0, x1 - x0 + 1) * Math.max(0, y1 - y0 + 1);
+        int waterCells = isValidPosition(x, y) ? grid.getWaterCount(grid.index(x, y)) : 0;
+
+        return (double)waterCells / totalCells;
+    }
+
+    // Признаки клетки одним байтом (Grid.WATER, Grid.TUNNEL, ...) — для отрисовки,
+    // которой нужно много признаков каждой видимой клетки за кадр
+    int getCellFlags(int x, int y) {
+        return isValidPosition(x, y) ? grid.flags(grid.index(x, y)) : 0;
+    }
+
+    // Обходит клетки с признаком flag (Grid.ROOT, Grid.TUNNEL, ...) только по заведённым
+    // чанкам; клетка передаётся как y * width + x
+    void forEachCellWith(int flag, LongConsumer action) {
+        for (int chunk = 0; chunk < grid.chunkCount(); chunk++) {
+            if (!grid.isAllocated(chunk)) continue;
+            int base = chunk << Grid.CHUNK_CELL_BITS;
+            for (int i = 0; i < Grid.CHUNK_CELLS; i++) {
+                int cell = base + i;
+                if (grid.has(cell, flag)) action.accept((long) grid.y(cell) * width + grid.x(cell));
             }
         }
+    }
 
-        return (double)waterCells / totalCells;
+    public int getTunnelCount() {
+        return tunnelCount;
     }
+
     public boolean hasTunnelAt(int x, int y) {
-        if (!isValidPosition(x, y)) return false;
-        return tunnelMap[x][y] > 0;
+        return grid.has(x, y, Grid.TUNNEL);
     }
 
-    private void generateGasChambers() {
-        Random random = new Random();
-        int clusterCount = (width * height) / 500; // Примерно 1 газовая камера на 500 клеток
+    // Сколько тиков туннель ещё продержится (0 — туннеля нет), не больше Moles.TUNNEL_DURATION
+    public int getTunnelRemaining(int x, int y) {
+        if (!isValidPosition(x, y)) return 0;
+        return tunnelRemaining(grid.index(x, y));
+    }
 
-        // Увеличиваем количество летом
-        if (season == Season.SUMMER) {
-            clusterCount = (width * height) / 300; // На 40% больше
-        }
+    // Срок хранится по модулю 2^16; пока клетка в колесе, до него не больше TUNNEL_DURATION
+    private int tunnelRemaining(int cell) {
+        if (!grid.has(cell, Grid.TUNNEL)) return 0;
+        return (grid.getTunnelExpiry(cell) - tunnelClock) & 0xFFFF;
+    }
 
-        // Дополнительно можно увеличить размер кластеров летом
-        int minClusterSize = 4;
-        int maxClusterSize = 8;
+    // Газ чанка: примерно одна камера из 4–8 клеток на 500 клеток, летом на 300.
+    // Камеры не выходят за свой чанк, поэтому чанки генерируются независимо
+    private long[] generateGas(int chunk) {
+        long[] mask = new long[Grid.CHUNK_SIZE];
+        SplittableRandom chunkRandom = new SplittableRandom(Rng.mix(gasSeed, chunk));
 
-        if (season == Season.SUMMER) {
-            maxClusterSize = 10; // Большие скопления газа
-        }
+        int x0 = (chunk % grid.chunksX) * Grid.CHUNK_SIZE;
+        int y0 = (chunk / grid.chunksX) * Grid.CHUNK_SIZE;
+        int chunkWidth = Math.min(Grid.CHUNK_SIZE, width - x0);
+        int chunkHeight = Math.min(Grid.CHUNK_SIZE, height - y0);
+
+        // Увеличиваем количество летом
+        double clusters = chunkWidth * chunkHeight / (season == Season.SUMMER ? 300.0 : 500.0);
+        int clusterCount = (int) clusters;
+        if (chunkRandom.nextDouble() < clusters - clusterCount) clusterCount++;
 
         for (int i = 0; i < clusterCount; i++) {
-            int clusterSize = 4 + random.nextInt(5); // 4–8 клеток
-            int startX = random.nextInt(width);
-            int startY = random.nextInt(height);
+            int clusterSize = 4 + chunkRandom.nextInt(5); // 4–8 клеток
+            int startX = chunkRandom.nextInt(chunkWidth);
+            int startY = chunkRandom.nextInt(chunkHeight);
 
             for (int j = 0; j < clusterSize; j++) {
-                int dx = startX + random.nextInt(3) - 1;
-                int dy = startY + random.nextInt(3) - 1;
+                int dx = startX + chunkRandom.nextInt(3) - 1;
+                int dy = startY + chunkRandom.nextInt(3) - 1;
 
-                if (isInBounds(dx, dy) && !isWater(dx, dy)) {
-                    gasChambers[dx][dy] = true;
+                if (dx >= 0 && dx < chunkWidth && dy >= 0 && dy < chunkHeight
+                        && !isWater(x0 + dx, y0 + dy)) {
+                    mask[dy] |= 1L << dx;
                 }
             }
         }
+        return mask;
     }
 
-    private boolean isInBounds(int x, int y) {
-        return x >= 0 && y >= 0 && x < width && y < height;
+    // Газ по уже сгенерированной маске; чанк без маски считается пустым. Для отрисовки:
+    // кадр не должен генерировать маски всех видимых чанков
+    boolean peekGasChamber(int x, int y) {
+        if (!isValidPosition(x, y)) return false;
+        long[] mask = gasMasks.get(Grid.chunkOf(grid.index(x, y)));
+        return mask != null && (mask[y & Grid.CHUNK_MASK] & 1L << (x & Grid.CHUNK_MASK)) != 0;
     }
 
     public boolean isGasChamber(int x, int y) {
-        return isInBounds(x, y) && gasChambers[x][y];
+        if (!isValidPosition(x, y)) return false;
+        int chunk = Grid.chunkOf(grid.index(x, y));
+        long[] mask = gasMasks.get(chunk);
+        if (mask == null) {
+            // Маска зависит только от seed и воды, так что гонка потоков безвредна
+            mask = generateGas(chunk);
+            if (!gasMasks.compareAndSet(chunk, null, mask)) mask = gasMasks.get(chunk);
+        }
+        return (mask[y & Grid.CHUNK_MASK] & 1L << (x & Grid.CHUNK_MASK)) != 0;
     }
 
-    public void addMole(Mole mole) {
-        moles.add(mole);
-        getChildren().add(mole.getVisual());
+    public void addMole(int x, int y, long seed) {
+        int slot = moles.spawn(x, y, seed);
+        profile.moleSpawns++;
+        markTunnelCell(x, y);
+        for (WorldListener l : listeners) l.moleAdded(moles.getId(slot));
     }
     public boolean hasMoleAt(int x, int y) {
-        for (Mole mole : moles) {
-            if (mole.isAlive() && mole.getX() == x && mole.getY() == y) {
-                return true;
-            }
-        }
-        return false;
+        countLookup(y);
+        return moles.hasAt(x, y);
     }
 
     private void generateInitialMushrooms(int waterCount) {
@@ -555,31 +1146,35 @@ public class World extends Pane {
             } while ((isWater(x, y) || hasMushroomAt(x, y) || !isNearWater(x, y)) && attempts < 100);
 
             if (attempts < 100) {
-                mushrooms.add(new Mushroom(x, y));
-                getChildren().add(mushrooms.get(mushrooms.size()-1).getVisual());
+                addMushroom(new Mushroom(x, y, random.nextLong()));
             }
         }
     }
 
     public boolean hasMushroomAt(int x, int y) {
-        for (Mushroom m : mushrooms) {
-            if (m.getX() == x && m.getY() == y && m.isAlive()) {
-                return true;
-            }
-        }
-        return false;
+        return getMushroomAt(x, y) != null;
     }
 
     public void addMushroom(Mushroom mushroom) {
         mushrooms.add(mushroom);
-        getChildren().add(mushroom.getVisual());
+        profile.mushroomSpawns++;
+        int cell = grid.index(mushroom.getX(), mushroom.getY());
+        Mushroom[] cells = mushroomCells[Grid.chunkOf(cell)];
+        if (cells == null) {
+            cells = mushroomCells[Grid.chunkOf(cell)] = new Mushroom[Grid.CHUNK_CELLS];
+        }
+        cells[Grid.localOf(cell)] = mushroom;
+        for (WorldListener l : listeners) l.mushroomAdded(mushroom);
     }
 
-    private void updateMushrooms(double deltaTime) {
-        List<Mushroom> mushroomsToUpdate = new ArrayList<>(mushrooms);
+    // Проход по индексу вместо копии списка: выросшие за проход дописываются в конец
+    // и ждут следующего тика, убранные остаются на месте до конца фазы
+    private void updateMushrooms() {
+        int count = mushrooms.size();
         double spreadChance = 0.01; // Базовый шанс
 
-        for (Mushroom m : mushroomsToUpdate) {
+        for (int i = 0; i < count; i++) {
+            Mushroom m = mushrooms.get(i);
             if (m.isAlive()) {
                 // Зимой грибы не распространяются
                 if (season != Season.WINTER) {
@@ -598,16 +1193,99 @@ public class World extends Pane {
     }
 
     public Mushroom getMushroomAt(int x, int y) {
-        for (Mushroom m : mushrooms) {
-            if (m.getX() == x && m.getY() == y && m.isAlive()) {
-                return m;
-            }
-        }
-        return null;
+        countLookup(y);
+        return peekMushroomAt(x, y);
+    }
+
+    // То же без счёта в профиле тика — для отрисовки
+    Mushroom peekMushroomAt(int x, int y) {
+        if (!isValidPosition(x, y)) return null;
+        int cell = grid.index(x, y);
+        Mushroom[] cells = mushroomCells[Grid.chunkOf(cell)];
+        if (cells == null) return null;
+        Mushroom m = cells[Grid.localOf(cell)];
+        return m != null && m.isAlive() ? m : null;
     }
 
+    // Гриб становится съеденным и пропадает из индекса клеток сразу, а из списка —
+    // в конце фазы; вне тика — сразу отовсюду
     public void removeMushroom(Mushroom mushroom) {
-        mushrooms.remove(mushroom);
-        getChildren().remove(mushroom.getVisual());
+        if (!isIndexed(mushroom)) return;
+        int cell = grid.index(mushroom.getX(), mushroom.getY());
+        mushroomCells[Grid.chunkOf(cell)][Grid.localOf(cell)] = null;
+        mushroom.consume();
+        if (deferring) {
+            stripLog(mushroom.getY()).addMushroom(mushroom);
+        } else {
+            mushroomRemoved(mushroom);
+        }
+    }
+
+    private void mushroomRemoved(Mushroom mushroom) {
+        profile.mushroomDeaths++;
+        removedMushroomCount++;
+        for (WorldListener l : listeners) l.mushroomRemoved(mushroom);
+        if (!ticking) compactMushrooms();
+    }
+
+    // Гриб стоит в индексе клеток — значит, он в мире и ещё не убран
+    private boolean isIndexed(Mushroom mushroom) {
+        int cell = grid.index(mushroom.getX(), mushroom.getY());
+        Mushroom[] cells = mushroomCells[Grid.chunkOf(cell)];
+        return cells != null && cells[Grid.localOf(cell)] == mushroom;
+    }
+
+    // Убирает из списка все убранные с прошлого вызова грибы за один проход
+    // с сохранением порядка остальных. Съеденный, но ещё стоящий в индексе гриб
+    // (consume без removeMushroom) остаётся: его уберёт updateMushrooms
+    private void compactMushrooms() {
+        if (removedMushroomCount == 0) return;
+        int kept = 0;
+        for (int i = 0; i < mushrooms.size(); i++) {
+            Mushroom m = mushrooms.get(i);
+            if (m.isAlive() || isIndexed(m)) mushrooms.set(kept++, m);
+        }
+        for (int i = mushrooms.size() - 1; i >= kept; i--) {
+            mushrooms.remove(i);
+        }
+        removedMushroomCount = 0;
+    }
+
+    // События полосы тройками «вид, a, b» в порядке записи; грибы — по ссылке отдельно.
+    // Массивы растут удвоением и переиспользуются от тика к тику
+    private static final class StripLog {
+        static final int TUNNEL_DUG = 0;        // клетка, 1 — туннель новый
+        static final int MOLE_DIED = 1;         // id
+        static final int WORM_DIED = 2;         // id
+        static final int ROOT_REMOVED = 3;      // x, y
+        static final int ROOT_TIP = 4;          // клетка
+        static final int MUSHROOM_REMOVED = 5;  // номер в mushrooms
+
+        int[] events = new int[3 * 64];
+        int size = 0;
+        Mushroom[] mushrooms = new Mushroom[16];
+        int mushroomCount = 0;
+        int lookups = 0;
+
+        void add(int kind, int a, int b) {
+            if (size + 3 > events.length) events = Arrays.copyOf(events, events.length * 2);
+            events[size] = kind;
+            events[size + 1] = a;
+            events[size + 2] = b;
+            size += 3;
+        }
+
+        void addMushroom(Mushroom mushroom) {
+            if (mushroomCount == mushrooms.length) mushrooms = Arrays.copyOf(mushrooms, mushroomCount * 2);
+            mushrooms[mushroomCount] = mushroom;
+            add(MUSHROOM_REMOVED, mushroomCount++, 0);
+        }
+
+        void clear() {
+            size = 0;
+            Arrays.fill(mushrooms, 0, mushroomCount, null);
+            mushroomCount = 0;
+            lookups = 0;
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,25 @@
+// Уведомления о появлении и исчезновении объектов мира.
+// Симуляции слушатели не нужны, через них к ней подключается отрисовка.
+// Кроты и черви передаются постоянным id (см. Animals.slotOf)
+public interface WorldListener {
+    default void moleAdded(int id) {}
+    default void moleRemoved(int id) {}
+
+    default void wormAdded(int id) {}
+    default void wormRemoved(int id) {}
+
+    default void mushroomAdded(Mushroom mushroom) {}
+    default void mushroomRemoved(Mushroom mushroom) {}
+
+    default void rootAdded(int x, int y) {}
+    default void rootRemoved(int x, int y) {}
+
+    // Клетку прорыли заново или обновили срок туннеля
+    default void tunnelDug(int x, int y) {}
+
+    // Туннель в клетке осыпался (вызывается один раз, когда истёк срок)
+    default void tunnelFaded(int x, int y) {}
+
+    // Тик закончен, мир в согласованном состоянии
+    default void tickEnded(long tick) {}
+}
@@ -0,0 +1,49 @@
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Сохранение и загрузка мира в компактном двоичном снимке. Загруженный мир продолжает
+// прогон ровно так же, как продолжил бы исходный: сохраняются все состояния Rng.
+//
+// Формат (little-endian): MAGIC, VERSION, затем секции World.writeSnapshot —
+// заголовок мира, чанки сетки (битовые слои признаков, сроки туннелей, поля воды), кончики корней, колесо осыпания,
+// кроты и черви столбцами, грибы столбцами. При смене формата растёт VERSION
+public final class WorldSnapshot {
+    private static final int MAGIC = 0x454C4F4D; // "MOLE"
+    static final int VERSION = 1;
+
+    private WorldSnapshot() {
+    }
+
+    // Возвращает размер снимка в байтах
+    public static long save(World world, Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            SnapshotWriter out = new SnapshotWriter(channel);
+            out.putInt(MAGIC);
+            out.putInt(VERSION);
+            world.writeSnapshot(out);
+            out.flush();
+            return out.position();
+        }
+    }
+
+    public static World load(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            SnapshotReader in = new SnapshotReader(channel);
+            if (in.getInt() != MAGIC) {
+                throw new IOException("Не снимок мира: " + path);
+            }
+            int version = in.getInt();
+            if (version != VERSION) {
+                throw new IOException("Неподдерживаемая версия снимка " + version + ", ожидается " + VERSION);
+            }
+            World world = new World(in);
+            if (!in.atEnd()) {
+                throw new IOException("Лишние данные в конце снимка: " + path);
+            }
+            return world;
+        }
+    }
+}
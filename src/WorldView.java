@@ -0,0 +1,405 @@
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import javafx.scene.layout.Pane;
+import javafx.scene.paint.Color;
+import java.util.Arrays;
+
+// Отрисовка мира на JavaFX. Сама симуляция (World) о ней ничего не знает.
+// Рисуется только то, что попало в окно камеры: клетки сводятся в буфер ARGB
+// (пиксель на клетку, а при мелком масштабе — пиксель на пиксель экрана) и уходят
+// на холст одной картинкой, существа рисуются поверх. Цена кадра поэтому зависит
+// от размера окна, а не от размера мира
+public class WorldView extends Pane {
+    public static final int CELL_SIZE = 10;
+
+    // Мельче этого существа не рисуются поштучно, а подкрашивают клетки по плотности
+    private static final double ENTITY_MIN_ZOOM = 3;
+    private static final double GRID_MIN_ZOOM = 6;
+    // Колесо мыши: во сколько раз меняется масштаб за один щелчок
+    private static final double ZOOM_STEP = 1.15;
+    private static final double SCROLL_NOTCH = 40;
+
+    // Прозрачность туннеля квантуется в PALETTE_SIZE ступеней
+    private static final int PALETTE_SIZE = 16;
+    private static final int ROOT = argb(34, 139, 34, 1);
+    // Биты вида фона сверх Grid.WATER и Grid.EMPTY
+    private static final int KIND_NEAR_WATER = 4;
+    private static final int KIND_GAS = 8;
+    // Цвета кадра заводятся один раз, а не на каждой отрисовке
+    private static final Color BACKGROUND = Color.rgb(25, 15, 8);
+    private static final Color GRID_LINE = Color.rgb(100, 70, 40, 0.7);
+
+    private final World world;
+    private final int width;
+    private final int height;
+    private final boolean winter;
+
+    private final Camera camera = new Camera(CELL_SIZE);
+    private final Canvas canvas = new Canvas();
+
+    // Готовые цвета клетки: [вид фона][ступень туннеля][иней], см. cellColor
+    private final int[] cellColors;
+
+    // Буферы кадра растут до размера окна и дальше переиспользуются
+    private int[] pixels = new int[0];
+    private int[] density = new int[0];
+    private WritableImage image;
+    private int imageWidth = 0;
+    private int imageHeight = 0;
+
+    private double dragX;
+    private double dragY;
+
+    public WorldView(World world) {
+        this.world = world;
+        this.width = world.width;
+        this.height = world.height;
+        this.winter = world.getSeason() == Season.WINTER;
+        this.cellColors = buildCellColors(world.getSeason());
+
+        // Холст всегда размером с окно
+        setMinSize(0, 0);
+        canvas.widthProperty().bind(widthProperty());
+        canvas.heightProperty().bind(heightProperty());
+        getChildren().add(canvas);
+
+        // Перетаскивание двигает камеру, колесо масштабирует вокруг курсора
+        setOnMousePressed(e -> {
+            dragX = e.getX();
+            dragY = e.getY();
+        });
+        setOnMouseDragged(e -> {
+            camera.pan(e.getX() - dragX, e.getY() - dragY);
+            dragX = e.getX();
+            dragY = e.getY();
+        });
+        setOnScroll(e -> camera.zoomAt(Math.pow(ZOOM_STEP, e.getDeltaY() / SCROLL_NOTCH), e.getX(), e.getY()));
+    }
+
+    public World getWorld() {
+        return world;
+    }
+
+    public Camera getCamera() {
+        return camera;
+    }
+
+    // Вызывается раз в кадр; alpha — доля пути между последним и следующим тиком
+    public void render(double alpha) {
+        double screenWidth = canvas.getWidth();
+        double screenHeight = canvas.getHeight();
+        if (screenWidth < 1 || screenHeight < 1) return;
+        camera.clamp(width, height, screenWidth, screenHeight);
+
+        GraphicsContext gc = canvas.getGraphicsContext2D();
+        gc.setImageSmoothing(false);
+        gc.setFill(BACKGROUND);
+        gc.fillRect(0, 0, screenWidth, screenHeight);
+
+        double zoom = camera.getZoom();
+        // Видимая часть поля в клетках
+        double left = Math.max(0, camera.getX());
+        double top = Math.max(0, camera.getY());
+        double right = Math.min(width, camera.getX() + screenWidth / zoom);
+        double bottom = Math.min(height, camera.getY() + screenHeight / zoom);
+        if (right <= left || bottom <= top) return;
+
+        if (zoom >= 1) {
+            left = Math.floor(left);
+            top = Math.floor(top);
+            right = Math.ceil(right);
+            bottom = Math.ceil(bottom);
+        }
+        FrameEvent event = FrameEvent.TYPE.isEnabled() ? new FrameEvent() : null;
+        if (event != null) event.begin();
+        long start = System.nanoTime();
+        drawCells(gc, alpha, left, top, right, bottom);
+        long cellsDone = System.nanoTime();
+
+        int x0 = (int) left, y0 = (int) top;
+        int x1 = (int) Math.ceil(right), y1 = (int) Math.ceil(bottom);
+        if (zoom >= GRID_MIN_ZOOM) drawGrid(gc, x0, y0, x1, y1);
+        long gridDone = System.nanoTime();
+        if (zoom >= ENTITY_MIN_ZOOM) drawEntities(gc, alpha, x0, y0, x1, y1);
+
+        if (event != null) {
+            event.zoom = zoom;
+            event.visibleCells = (long) (x1 - x0) * (y1 - y0);
+            event.cells = cellsDone - start;
+            event.grid = gridDone - cellsDone;
+            event.entities = System.nanoTime() - gridDone;
+            event.commit();
+        }
+    }
+
+    // Клетки окна в буфер и на холст. Крупно — пиксель буфера на клетку, картинка
+    // растягивается; мелко — пиксель буфера на пиксель экрана с клеткой под его центром
+    private void drawCells(GraphicsContext gc, double alpha, double left, double top, double right, double bottom) {
+        double zoom = camera.getZoom();
+        double scale = Math.min(1, zoom);
+        int w = Math.max(1, (int) Math.ceil((right - left) * scale));
+        int h = Math.max(1, (int) Math.ceil((bottom - top) * scale));
+        ensureBuffers(w, h);
+        // Крупно газ видно, и маски видимых чанков заводятся; мелко окно может охватить
+        // всё поле, и показывается только то, что уже завёл тик
+        boolean generateGas = zoom >= ENTITY_MIN_ZOOM;
+
+        for (int py = 0; py < h; py++) {
+            int cy = Math.min(height - 1, (int) (top + (py + 0.5) / scale));
+            int row = py * w;
+            for (int px = 0; px < w; px++) {
+                int cx = Math.min(width - 1, (int) (left + (px + 0.5) / scale));
+                pixels[row + px] = cellColor(cx, cy, generateGas);
+            }
+        }
+        if (zoom < ENTITY_MIN_ZOOM) addDensity(alpha, left, top, scale, w, h);
+
+        image.getPixelWriter().setPixels(0, 0, w, h, PixelFormat.getIntArgbInstance(), pixels, 0, w);
+        gc.drawImage(image, 0, 0, w, h,
+                camera.toScreenX(left), camera.toScreenY(top), w * zoom / scale, h * zoom / scale);
+    }
+
+    // generateGas — заводить ли маску газа чанка, если её ещё нет; без этого газ виден
+    // только в чанках, куда уже добирались существа
+    private int cellColor(int x, int y, boolean generateGas) {
+        int flags = world.getCellFlags(x, y);
+        if ((flags & Grid.ROOT) != 0) return ROOT;
+
+        int kind = (flags & (Grid.WATER | Grid.EMPTY)) | ((flags & Grid.NEAR_WATER) != 0 ? KIND_NEAR_WATER : 0)
+                | ((generateGas ? world.isGasChamber(x, y) : world.peekGasChamber(x, y)) ? KIND_GAS : 0);
+        int bucket = 0;
+        if ((flags & Grid.TUNNEL) != 0) {
+            int remaining = world.getTunnelRemaining(x, y);
+            bucket = (remaining * PALETTE_SIZE + Moles.TUNNEL_DURATION - 1) / Moles.TUNNEL_DURATION;
+        }
+        int frost = winter && y < World.FROZEN_TOP_LAYERS ? 1 : 0;
+        return cellColors[(kind * (PALETTE_SIZE + 1) + bucket) * 2 + frost];
+    }
+
+    // Все сочетания слоёв фона: земля, вода, пустоты, газ, туннель и зимний туман.
+    // Сезон мира не меняется, так что таблица считается один раз
+    private static int[] buildCellColors(Season season) {
+        int soil = argb(60, 30, 10, 1);
+        int nearWaterSoil = argb(50, 25, 8, 1); // Более темный оттенок земли
+        int empty = argb(0, 0, 0, 1);
+        // Газовые камеры летом ярче и заметнее
+        double gasAlpha = season == Season.SUMMER ? 0.85 : 0.25;
+
+        int[] colors = new int[16 * (PALETTE_SIZE + 1) * 2];
+        for (int kind = 0; kind < 16; kind++) {
+            boolean water = (kind & Grid.WATER) != 0;
+            int color = soil;
+            if ((kind & KIND_NEAR_WATER) != 0 && !water) color = nearWaterSoil;
+            if (water) color = blend(color, 30, 144, 255, 0.7);
+            if ((kind & Grid.EMPTY) != 0) color = empty;
+            if ((kind & KIND_GAS) != 0) color = blend(color, 0, 255, 0, gasAlpha);
+
+            for (int bucket = 0; bucket <= PALETTE_SIZE; bucket++) {
+                int tunnel = bucket > 0
+                        ? blend(color, 139, 69, 19, 0.2 + 0.8 * bucket / PALETTE_SIZE) : color;
+                int index = (kind * (PALETTE_SIZE + 1) + bucket) * 2;
+                colors[index] = tunnel;
+                colors[index + 1] = blend(tunnel, 180, 220, 255, 0.3); // голубоватый туман
+            }
+        }
+        return colors;
+    }
+
+    // Кроты и черви при мелком масштабе: подсчёт по пикселям буфера и подкраска.
+    // Кроты заметнее червей, поэтому пиксель с кротом красится в их цвет. Как и в
+    // drawEntities, при окне меньше популяции особи берутся по клеткам окна
+    private void addDensity(double alpha, double left, double top, double scale, int w, int h) {
+        int n = w * h;
+        Arrays.fill(density, 0, n, 0);
+        int x0 = (int) left, y0 = (int) top;
+        int x1 = Math.min(width, (int) Math.ceil(left + w / scale));
+        int y1 = Math.min(height, (int) Math.ceil(top + h / scale));
+        long visibleCells = (long) (x1 - x0) * (y1 - y0);
+
+        Worms worms = world.getWorms();
+        if (visibleCells < worms.size()) {
+            for (int y = y0; y < y1; y++) {
+                for (int x = x0; x < x1; x++) {
+                    for (int i = worms.firstAt(x, y); i >= 0; i = worms.nextAt(i)) {
+                        addWormDensity(worms, i, left, top, scale, w, h);
+                    }
+                }
+            }
+        } else {
+            for (int i = 0; i < worms.size(); i++) {
+                if (worms.isAlive(i)) addWormDensity(worms, i, left, top, scale, w, h);
+            }
+        }
+
+        // Крот между тиками переползает в соседнюю клетку, поэтому окно шире на клетку
+        Moles moles = world.getMoles();
+        if (visibleCells < moles.size()) {
+            for (int y = Math.max(0, y0 - 1); y < Math.min(height, y1 + 1); y++) {
+                for (int x = Math.max(0, x0 - 1); x < Math.min(width, x1 + 1); x++) {
+                    for (int i = moles.firstAt(x, y); i >= 0; i = moles.nextAt(i)) {
+                        addMoleDensity(moles, i, alpha, left, top, scale, w, h);
+                    }
+                }
+            }
+        } else {
+            for (int i = 0; i < moles.size(); i++) {
+                if (moles.isAlive(i)) addMoleDensity(moles, i, alpha, left, top, scale, w, h);
+            }
+        }
+
+        for (int b = 0; b < n; b++) {
+            int d = density[b];
+            if (d == 0) continue;
+            int moleCount = d & 0xFFFF;
+            if (moleCount > 0) {
+                pixels[b] = blend(pixels[b], 169, 169, 169, Math.min(1, 0.6 + 0.1 * moleCount));
+            } else {
+                pixels[b] = blend(pixels[b], 255, 192, 203, Math.min(1, 0.4 + 0.1 * (d >>> 16)));
+            }
+        }
+    }
+
+    private void addWormDensity(Worms worms, int i, double left, double top, double scale, int w, int h) {
+        int b = bin(worms.getX(i) + 0.5, worms.getY(i) + 0.5, left, top, scale, w, h);
+        if (b >= 0) density[b] += 1 << 16;
+    }
+
+    private void addMoleDensity(Moles moles, int i, double alpha, double left, double top, double scale, int w, int h) {
+        int b = bin(moles.getRenderX(i, alpha) + 0.5, moles.getRenderY(i, alpha) + 0.5, left, top, scale, w, h);
+        if (b >= 0) density[b]++;
+    }
+
+    private static int bin(double cx, double cy, double left, double top, double scale, int w, int h) {
+        int px = (int) Math.floor((cx - left) * scale);
+        int py = (int) Math.floor((cy - top) * scale);
+        return px >= 0 && px < w && py >= 0 && py < h ? py * w + px : -1;
+    }
+
+    private void ensureBuffers(int w, int h) {
+        if (pixels.length < w * h) {
+            pixels = new int[w * h];
+            density = new int[w * h];
+        }
+        if (image == null || imageWidth < w || imageHeight < h) {
+            imageWidth = Math.max(w, imageWidth);
+            imageHeight = Math.max(h, imageHeight);
+            image = new WritableImage(imageWidth, imageHeight);
+        }
+    }
+
+    // Существа в клетках [x0, x1) × [y0, y1). Если видимых клеток меньше, чем особей,
+    // дешевле пройти по клеткам через индекс занятости, чем по всей популяции
+    private void drawEntities(GraphicsContext gc, double alpha, int x0, int y0, int x1, int y1) {
+        double zoom = camera.getZoom();
+        long visibleCells = (long) (x1 - x0) * (y1 - y0);
+
+        // Спрайт уже нужного размера, рисуется без масштабирования
+        int mushroomSize = Math.max(1, (int) Math.round(zoom * 0.8));
+        Image mushroomImage = SpriteCache.get("mushroom.png", mushroomSize);
+        double mushroomOffset = (zoom - mushroomSize) / 2;
+        if (visibleCells < world.getMushrooms().size()) {
+            for (int y = y0; y < y1; y++) {
+                for (int x = x0; x < x1; x++) {
+                    Mushroom mushroom = world.peekMushroomAt(x, y);
+                    if (mushroom != null) drawMushroom(gc, mushroomImage, mushroom, mushroomOffset);
+                }
+            }
+        } else {
+            for (Mushroom mushroom : world.getMushrooms()) {
+                if (!mushroom.isAlive()) continue;
+                int x = mushroom.getX(), y = mushroom.getY();
+                if (x >= x0 && x < x1 && y >= y0 && y < y1) drawMushroom(gc, mushroomImage, mushroom, mushroomOffset);
+            }
+        }
+
+        Worms worms = world.getWorms();
+        gc.setFill(Color.PINK);
+        if (visibleCells < worms.size()) {
+            for (int y = y0; y < y1; y++) {
+                for (int x = x0; x < x1; x++) {
+                    int i = worms.firstAt(x, y);
+                    if (i >= 0) drawWorm(gc, worms, i, zoom);
+                }
+            }
+        } else {
+            for (int i = 0; i < worms.size(); i++) {
+                if (!worms.isAlive(i)) continue;
+                int x = worms.getX(i), y = worms.getY(i);
+                if (x >= x0 && x < x1 && y >= y0 && y < y1) drawWorm(gc, worms, i, zoom);
+            }
+        }
+
+        // Крот между тиками переползает в соседнюю клетку, поэтому окно шире на клетку
+        Moles moles = world.getMoles();
+        gc.setFill(Color.DARKGRAY);
+        gc.setStroke(Color.BLACK);
+        gc.setLineWidth(1);
+        if (visibleCells < moles.size()) {
+            for (int y = Math.max(0, y0 - 1); y < Math.min(height, y1 + 1); y++) {
+                for (int x = Math.max(0, x0 - 1); x < Math.min(width, x1 + 1); x++) {
+                    int i = moles.firstAt(x, y);
+                    if (i >= 0) drawMole(gc, moles, i, alpha, zoom);
+                }
+            }
+        } else {
+            for (int i = 0; i < moles.size(); i++) {
+                if (!moles.isAlive(i)) continue;
+                int x = moles.getX(i), y = moles.getY(i);
+                if (x >= x0 - 1 && x <= x1 && y >= y0 - 1 && y <= y1) drawMole(gc, moles, i, alpha, zoom);
+            }
+        }
+    }
+
+    private void drawMushroom(GraphicsContext gc, Image image, Mushroom mushroom, double offset) {
+        gc.drawImage(image,
+                camera.toScreenX(mushroom.getX()) + offset,
+                camera.toScreenY(mushroom.getY()) + offset);
+    }
+
+    private void drawWorm(GraphicsContext gc, Worms worms, int i, double zoom) {
+        double radius = zoom / 3;
+        double centerX = camera.toScreenX(worms.getX(i) + 0.5);
+        double centerY = camera.toScreenY(worms.getY(i) + 0.5);
+        gc.fillOval(centerX - radius, centerY - radius, radius * 2, radius * 2);
+    }
+
+    private void drawMole(GraphicsContext gc, Moles moles, int i, double alpha, double zoom) {
+        double x = camera.toScreenX(moles.getRenderX(i, alpha));
+        double y = camera.toScreenY(moles.getRenderY(i, alpha));
+        gc.fillRect(x, y, zoom, zoom);
+        gc.strokeRect(x, y, zoom, zoom);
+    }
+
+    private void drawGrid(GraphicsContext gc, int x0, int y0, int x1, int y1) {
+        gc.setStroke(GRID_LINE);
+        gc.setLineWidth(0.5);
+
+        double top = camera.toScreenY(y0), bottom = camera.toScreenY(y1);
+        for (int x = x0; x <= x1; x++) {
+            double sx = camera.toScreenX(x);
+            gc.strokeLine(sx, top, sx, bottom);
+        }
+
+        double left = camera.toScreenX(x0), right = camera.toScreenX(x1);
+        for (int y = y0; y <= y1; y++) {
+            double sy = camera.toScreenY(y);
+            gc.strokeLine(left, sy, right, sy);
+        }
+    }
+
+    static int argb(int r, int g, int b, double alpha) {
+        int a = (int) Math.round(alpha * 255);
+        return (a << 24) | (r << 16) | (g << 8) | b;
+    }
+
+    // Непрозрачный цвет dst, поверх которого положен цвет (r, g, b) с прозрачностью alpha
+    private static int blend(int dst, int r, int g, int b, double alpha) {
+        int dr = (dst >> 16) & 0xFF, dg = (dst >> 8) & 0xFF, db = dst & 0xFF;
+        return argb((int) Math.round(dr + (r - dr) * alpha),
+                (int) Math.round(dg + (g - dg) * alpha),
+                (int) Math.round(db + (b - db) * alpha), 1);
+    }
+}
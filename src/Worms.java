@@ -0,0 +1,105 @@
+import java.io.IOException;
+import java.util.Arrays;
+
+public class Worms extends Animals {
+    public static final int REPRODUCTION_TIME = 200;
+    public static final int MAX_AGE = 2000;
+    public static final double REPRODUCTION_PROBABILITY = 0.5;
+    private static final int MAX_HUNGER = 300;
+    private static final int HUNGER_PER_TICK = 1;
+
+
+    private short[] age = new short[capacity];
+
+    public Worms(Grid grid) {
+        super(grid);
+    }
+
+    int spawn(int x, int y, long seed) {
+        int slot = add(x, y, seed);
+        age[slot] = 0;
+        return slot;
+    }
+
+    public int getAge(int slot) {
+        return age[slot];
+    }
+
+    @Override
+    public void plan(World world, int i) {
+        intent[i] = 0;
+        if (!alive[i]) return;
+
+        age[i]++;
+        addHunger(i, HUNGER_PER_TICK);
+        countReproduction(i);
+
+        if (age[i] >= MAX_AGE || hunger[i] >= MAX_HUNGER) {
+            intent[i] = INTENT_STARVE;
+            return;
+        }
+        if (world.isGasChamber(x[i], y[i])) {
+            intent[i] = INTENT_GAS;
+            return;
+        }
+
+        if (Rng.nextDouble(rng, i) < 0.01) planRandomMove(world, i);
+        // Зимой шанс размножения значительно ниже
+        double reproductionProb = REPRODUCTION_PROBABILITY;
+        if (world.getSeason() == Season.WINTER) {
+            reproductionProb *= 0.2; // Уменьшаем шанс в 5 раз
+        }
+        else if (world.getSeason() == Season.AUTUMN) {
+            reproductionProb *= 2; // В 2 раза чаще размножаются
+        }
+
+        // Две попытки за тик, но после удачной счётчик сброшен и вторая не пройдёт
+        if (reproductionCounter[i] >= REPRODUCTION_TIME &&
+                (Rng.nextDouble(rng, i) < reproductionProb || Rng.nextDouble(rng, i) < reproductionProb)) {
+            reproductionCounter[i] = 0;
+            intent[i] |= INTENT_REPRODUCE;
+        }
+    }
+
+    @Override
+    public void commit(World world, int i) {
+        if (!alive[i]) return;
+        if ((intent[i] & (INTENT_STARVE | INTENT_GAS)) != 0) {
+            world.killWorm(i);
+            return;
+        }
+
+        checkForFood(world, i); // Используем общий метод проверки пищи
+
+        if ((intent[i] & INTENT_MOVE) != 0) {
+            moveTo(i, planX[i], planY[i]);
+        }
+        if ((intent[i] & INTENT_REPRODUCE) != 0) {
+            world.addWormNearWater(x[i], y[i], Rng.split(rng, i));
+        }
+    }
+
+    @Override
+    void write(SnapshotWriter out) throws IOException {
+        super.write(out);
+        out.putShorts(age, count);
+    }
+
+    @Override
+    void read(SnapshotReader in) throws IOException {
+        super.read(in);
+        in.getShorts(age, count);
+    }
+
+    @Override
+    protected void moveSlot(int from, int to) {
+        super.moveSlot(from, to);
+        age[to] = age[from];
+    }
+
+    @Override
+    protected void grow(int newCapacity) {
+        super.grow(newCapacity);
+        age = Arrays.copyOf(age, newCapacity);
+    }
+}